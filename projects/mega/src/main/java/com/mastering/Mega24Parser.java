@@ -1,6 +1,11 @@
 package com.mastering;
 
-import java.io.BufferedWriter;
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.client.AdaptiveRateLimiter;
+import com.mastering.mega.number.client.PageSizeController;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.search.MsisdnDeduplicator;
+
 import java.io.IOException;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
@@ -9,30 +14,30 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Mega24Parser {
 
     // private static final String[] PREFIXES = {"550", "551", "552", "553", "554", "555", "556", "557", "558", "559", "755", "880", "888", "990", "995", "997", "998", "999"};
     private static final String[] PREFIXES = {"555"};
     private static final int LIMIT = 20000;
+    private static final int MAX_RETRIES = 5; // consecutive failed requests before a prefix is given up
     private static final String URL = "https://mega24.kg/ru/number/search";
 
     private static final String CSV_HEADER = "MSISDN,CATEGORY_NAME,CATEGORY_PRICE,NCLS_ID,NSTS_ID";
+    private static final int MAX_OPEN_WRITERS = 32;
+    private static final long FLUSH_INTERVAL_MS = 5000;
 
     private static final CookieManager cookieManager = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
     private static final HttpClient client = HttpClient.newBuilder()
             .cookieHandler(cookieManager)
             .build();
+    private static final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(new MegaProperties.RateLimit());
+    private static final CrawlMetrics metrics = new CrawlMetrics(new MegaProperties.Metrics(), rateLimiter::getRate);
+    private static final PageSizeController pageSize = new PageSizeController(pageSizeConfig(), LIMIT);
+    private static final MsisdnDeduplicator deduplicator = new MsisdnDeduplicator();
+    private static final Mega24RecordDecoder decoder = new Mega24RecordDecoder(deduplicator);
+    private static final Mega24WriterCache writers = new Mega24WriterCache(MAX_OPEN_WRITERS, FLUSH_INTERVAL_MS, CSV_HEADER);
 
     public static void main(String[] args) {
         System.out.println("Запуск парсера Mega24 (Java)...");
@@ -49,25 +54,39 @@ public class Mega24Parser {
             return;
         }
 
-        for (String prefix : PREFIXES) {
-            processPrefix(prefix);
+        metrics.start();
+        try (writers; metrics) {
+            for (String prefix : PREFIXES) {
+                processPrefix(prefix);
+                long start = System.nanoTime();
+                writers.sync();
+                metrics.onFlush(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            System.err.println("Output error: " + e.getMessage());
+            return;
         }
 
-        System.out.println("All prefixes processed");
+        System.out.printf("All prefixes processed: %d pages, %d records, %d retries, p99 %.0f ms%n",
+                metrics.getPages(), metrics.getRecords(), metrics.getRetries(), metrics.getRequestLatencyP99Millis());
     }
 
     private static void processPrefix(String prefix) {
         System.out.println("\n>>> PREFIX PROCESSING: " + prefix + " <<<");
         String mask = "996" + prefix + "XXXXXX";
-        int page = 1;
+        long offset = 0;
+        int limit = pageSize.limit();
+        int retries = 0;
 
         while (true) {
+            int page = (int) (offset / limit) + 1;
+            int skip = (int) (offset % limit); // already received with the previous page size
             try {
                 System.out.print("Loading: " + prefix + ", page " + page + "... ");
 
                 String payload = String.format(
                         "{\"category\": \"1,2,66,3,67,46,47,48,49\", \"limit\": %d, \"page\": %d, \"mask\": \"%s\"}",
-                        LIMIT, page, mask
+                        limit, page, mask
                 );
 
                 HttpRequest request = HttpRequest.newBuilder()
@@ -77,38 +96,59 @@ public class Mega24Parser {
                         .POST(HttpRequest.BodyPublishers.ofString(payload))
                         .build();
 
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                rateLimiter.acquire();
+                long start = System.nanoTime();
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                long latency = System.nanoTime() - start;
+                rateLimiter.onResponse(response.statusCode(), latency);
+                metrics.onResponse(response.statusCode(), latency);
 
                 if (response.statusCode() != 200) {
-                    System.out.println("Error HTTP " + response.statusCode() + ". Wait 5 seconds...");
-                    Thread.sleep(5000);
+                    // 429 and 5xx already slowed the rate limiter down, any other status will not change on its own
+                    boolean retryable = response.statusCode() == 429 || response.statusCode() >= 500;
+                    if (!retryable || ++retries > MAX_RETRIES) {
+                        System.out.printf("Error HTTP %d, giving up prefix %s%s%n", response.statusCode(), prefix,
+                                retryable ? " after " + MAX_RETRIES + " retries" : "");
+                        break;
+                    }
+                    metrics.onRetry();
+                    System.out.printf("Error HTTP %d. Retry %d of %d at %.2f req/s...%n",
+                            response.statusCode(), retries, MAX_RETRIES, rateLimiter.getRate());
                     continue;
                 }
+                retries = 0;
 
-                String jsonResponse = response.body();
+                byte[] body = response.body();
+                if (body == null) {
+                    System.out.println("The data has run out");
+                    break;
+                }
+                metrics.onBytes(body.length);
 
-                if (jsonResponse == null || jsonResponse.trim().equals("[]") || jsonResponse.length() < 10) {
+                String jsonResponse = new String(body, StandardCharsets.UTF_8);
+                if (jsonResponse.trim().equals("[]") || jsonResponse.length() < 10) {
                     System.out.println("The data has run out");
                     break;
                 }
 
-                Map<String, List<String>> groupedData = parseAndGroupJson(jsonResponse);
+                int records = decoder.decode(prefix, jsonResponse, skip);
+                pageSize.observe(records, latency, body.length);
 
-                if (groupedData.isEmpty()) {
+                if (records == 0) {
                     System.out.println("No valid objects found (or end of data)");
                     break;
                 }
 
-                for (Map.Entry<String, List<String>> entry : groupedData.entrySet()) {
-                    String nclsId = entry.getKey();
-                    List<String> rows = entry.getValue();
-                    writeToSpecificFile(prefix, nclsId, rows);
+                metrics.onPage(prefix, records);
+                metrics.onDuplicates(decoder.duplicates());
+                for (Mega24RecordDecoder.Group group : decoder.groups()) {
+                    writeToSpecificFile(prefix, group.id, group.rows);
                 }
 
-                System.out.println("Done. Records processed: " + groupedData.values().stream().mapToInt(List::size).sum());
+                System.out.println("Done. Records processed: " + records + ", duplicates skipped: " + decoder.duplicates());
 
-                page++;
-                Thread.sleep(1000);
+                offset = (long) page * limit;
+                limit = pageSize.limit();
 
             } catch (Exception e) {
                 System.err.println("\nCritical error: " + e.getMessage());
@@ -116,96 +156,18 @@ public class Mega24Parser {
                 break;
             }
         }
-    }
-
-    private static Map<String, List<String>> parseAndGroupJson(String json) {
-        Map<String, List<String>> groups = new HashMap<>();
-
-        Pattern objectPattern = Pattern.compile("\\{([^}]*)\\}");
-        Matcher objectMatcher = objectPattern.matcher(json);
-
-        while (objectMatcher.find()) {
-            String objectContent = objectMatcher.group(1);
-
-            String msisdn = extractValue(objectContent, "MSISDN");
-            String catName = extractValue(objectContent, "CATEGORY_NAME");
-            String catPrice = extractValue(objectContent, "CATEGORY_PRICE");
-            String nclsId = extractValue(objectContent, "NCLS_ID");
-            String nstsId = extractValue(objectContent, "NSTS_ID");
-
-            if (nclsId == null) nclsId = "unknown";
-
-            if (catName != null && catName.contains(",")) {
-                catName = "\"" + catName + "\"";
-            }
 
-            String csvRow = String.join(",",
-                    msisdn,
-                    catName,
-                    catPrice,
-                    nclsId,
-                    nstsId
-            );
-
-            groups.computeIfAbsent(nclsId, k -> new ArrayList<>()).add(csvRow);
-        }
-
-        return groups;
+        System.out.println("Duplicates dropped in " + prefix + ": " + deduplicator.dropped(prefix));
+        deduplicator.clear(prefix);
     }
 
-    private static String extractValue(String source, String key) {
-        Pattern p = Pattern.compile("\"" + key + "\":\\s*\"?([^,\"]*)\"?");
-        Matcher m = p.matcher(source);
-        if (m.find()) {
-            return decodeUnicode(m.group(1));
-        }
-        return "";
+    private static MegaProperties.PageSize pageSizeConfig() {
+        MegaProperties.PageSize config = new MegaProperties.PageSize();
+        config.setEnabled(true);
+        return config;
     }
 
-    private static String decodeUnicode(String val) {
-        if (val == null) return null;
-        if (!val.contains("\\u")) return val;
-
-        StringBuilder sb = new StringBuilder();
-        int len = val.length();
-        for (int i = 0; i < len; i++) {
-            char ch = val.charAt(i);
-            if (ch == '\\' && i + 5 < len && val.charAt(i + 1) == 'u') {
-                String hex = val.substring(i + 2, i + 6);
-                try {
-                    sb.append((char) Integer.parseInt(hex, 16));
-                    i += 5;
-                } catch (NumberFormatException e) {
-                    sb.append(ch);
-                }
-            } else {
-                sb.append(ch);
-            }
-        }
-        return sb.toString();
-    }
-
-    private static void writeToSpecificFile(String prefix, String nclsId, List<String> rows) throws IOException {
-        String filename = "mega24_" + prefix + "_" + nclsId + ".csv";
-        Path path = Paths.get(filename);
-        boolean fileExists = Files.exists(path);
-
-        try (BufferedWriter writer = Files.newBufferedWriter(
-                path,
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.APPEND)) {
-
-            if (!fileExists) {
-                writer.write('\ufeff');
-                writer.write(CSV_HEADER);
-                writer.newLine();
-            }
-
-            for (String row : rows) {
-                writer.write(row);
-                writer.newLine();
-            }
-        }
+    private static void writeToSpecificFile(String prefix, String nclsId, CharSequence rows) throws IOException {
+        writers.append(Paths.get("mega24_" + prefix + "_" + nclsId + ".csv"), rows);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+package com.mastering;
+
+import com.mastering.mega.number.search.MsisdnDeduplicator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-pass decoder for the search response array. Walks the JSON once, keeps the five fields of the current object in
+ * reusable buffers (decoding {@code \\uXXXX} and the other escapes inline) and appends each record as a CSV row to the
+ * buffer of its {@code NCLS_ID} group, skipping numbers the {@link MsisdnDeduplicator} has already seen. Buffers are
+ * reset, not reallocated, between pages; not thread-safe.
+ */
+final class Mega24RecordDecoder {
+
+    static final String UNKNOWN_GROUP = "unknown";
+
+    private static final String[] FIELDS = {"MSISDN", "CATEGORY_NAME", "CATEGORY_PRICE", "NCLS_ID", "NSTS_ID"};
+    private static final int MSISDN = 0;
+    private static final int NCLS_ID = 3;
+
+    private final MsisdnDeduplicator deduplicator; // null keeps every record
+
+    private final StringBuilder[] values = new StringBuilder[FIELDS.length];
+    private final List<Group> groups = new ArrayList<>();
+
+    private CharSequence json;
+    private int pos;
+    private int duplicates;
+
+    Mega24RecordDecoder() {
+        this(null);
+    }
+
+    Mega24RecordDecoder(MsisdnDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new StringBuilder(32);
+        }
+    }
+
+    int decode(String prefix, CharSequence page) {
+        return decode(prefix, page, 0);
+    }
+
+    /**
+     * Decodes one page and returns the number of records on it, duplicates and the first {@code skip} included; those
+     * are parsed but not kept. Rows from the previous call are discarded.
+     */
+    int decode(String prefix, CharSequence page, int skip) {
+        for (Group group : groups) {
+            group.rows.setLength(0);
+            group.count = 0;
+        }
+        json = page;
+        pos = 0;
+        duplicates = 0;
+        int records = 0;
+        try {
+            int length = page.length();
+            while (pos < length) {
+                if (page.charAt(pos++) == '{') {
+                    readObject();
+                    if (++records <= skip) {
+                        continue;
+                    }
+                    if (deduplicator != null && !deduplicator.firstSeen(prefix, values[MSISDN])) {
+                        duplicates++;
+                    } else {
+                        appendRow();
+                    }
+                }
+            }
+        } finally {
+            json = null;
+        }
+        return records;
+    }
+
+    /**
+     * Records of the last page dropped as already seen.
+     */
+    int duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Groups that received rows on the last {@link #decode}, in first-seen order.
+     */
+    List<Group> groups() {
+        List<Group> filled = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            if (group.count > 0) {
+                filled.add(group);
+            }
+        }
+        return filled;
+    }
+
+    private void readObject() {
+        for (StringBuilder value : values) {
+            value.setLength(0);
+        }
+        while (true) {
+            skipWhitespace();
+            char ch = json.charAt(pos++);
+            if (ch == '}') {
+                return;
+            }
+            if (ch == ',') {
+                continue;
+            }
+            if (ch != '"') {
+                throw malformed("expected a field name");
+            }
+            int field = readKey();
+            skipWhitespace();
+            if (json.charAt(pos++) != ':') {
+                throw malformed("expected ':'");
+            }
+            skipWhitespace();
+            readValue(field < 0 ? null : values[field]);
+        }
+    }
+
+    private int readKey() {
+        int start = pos;
+        while (json.charAt(pos) != '"') {
+            if (json.charAt(pos) == '\\') {
+                pos++;
+            }
+            pos++;
+        }
+        int length = pos++ - start;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].length() == length && regionMatches(start, FIELDS[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void readValue(StringBuilder target) {
+        char ch = json.charAt(pos);
+        if (ch == '"') {
+            pos++;
+            readString(target);
+        } else if (ch == '{' || ch == '[') {
+            skipNested();
+        } else {
+            int start = pos;
+            while (ch != ',' && ch != '}' && ch != ']' && !Character.isWhitespace(ch)) {
+                ch = json.charAt(++pos);
+            }
+            if (target != null && !(pos - start == 4 && regionMatches(start, "null"))) {
+                target.append(json, start, pos);
+            }
+        }
+    }
+
+    private void readString(StringBuilder target) {
+        while (true) {
+            char ch = json.charAt(pos++);
+            if (ch == '"') {
+                return;
+            }
+            if (ch == '\\') {
+                ch = json.charAt(pos++);
+                switch (ch) {
+                    case 'u' -> {
+                        ch = (char) (hex(pos) << 12 | hex(pos + 1) << 8 | hex(pos + 2) << 4 | hex(pos + 3));
+                        pos += 4;
+                    }
+                    case 'n' -> ch = '\n';
+                    case 'r' -> ch = '\r';
+                    case 't' -> ch = '\t';
+                    case 'b' -> ch = '\b';
+                    case 'f' -> ch = '\f';
+                    default -> {
+                        // '"', '\\' and '/' stand for themselves
+                    }
+                }
+            }
+            if (target != null) {
+                target.append(ch);
+            }
+        }
+    }
+
+    private void skipNested() {
+        int depth = 0;
+        do {
+            char ch = json.charAt(pos++);
+            if (ch == '"') {
+                readString(null);
+            } else if (ch == '{' || ch == '[') {
+                depth++;
+            } else if (ch == '}' || ch == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void appendRow() {
+        Group group = group(values[NCLS_ID]);
+        StringBuilder rows = group.rows;
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                rows.append(',');
+            }
+            appendCsv(rows, i == NCLS_ID ? group.id : values[i]);
+        }
+        rows.append(System.lineSeparator());
+        group.count++;
+    }
+
+    private Group group(StringBuilder nclsId) {
+        CharSequence id = nclsId.isEmpty() ? UNKNOWN_GROUP : nclsId;
+        for (Group group : groups) {
+            if (group.id.contentEquals(id)) {
+                return group;
+            }
+        }
+        Group group = new Group(id.toString());
+        groups.add(group);
+        return group;
+    }
+
+    private static void appendCsv(StringBuilder out, CharSequence value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                out.append('"');
+            }
+            out.append(ch);
+        }
+        out.append('"');
+    }
+
+    private boolean regionMatches(int start, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (json.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hex(int at) {
+        int digit = Character.digit(json.charAt(at), 16);
+        if (digit < 0) {
+            throw malformed("bad \\u escape");
+        }
+        return digit;
+    }
+
+    private void skipWhitespace() {
+        while (Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed search response at " + pos + ": " + reason);
+    }
+
+    static final class Group {
+        final String id;
+        final StringBuilder rows = new StringBuilder(1 << 12);
+        int count;
+
+        private Group(String id) {
+            this.id = id;
+        }
+    }
+}
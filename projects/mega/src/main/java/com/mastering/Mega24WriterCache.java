@@ -0,0 +1,121 @@
+package com.mastering;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU of open append-mode CSV writers keyed by output file. The least recently used writer is flushed and
+ * closed when the cache is full, all writers are flushed on a timer, and {@link #sync()} forces them to disk.
+ */
+final class Mega24WriterCache implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String header;
+    private final Map<Path, OpenFile> files;
+    private final ScheduledExecutorService flusher;
+
+    Mega24WriterCache(int maxOpen, long flushIntervalMs, String header) {
+        this.header = header;
+        this.files = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, OpenFile> eldest) {
+                if (size() <= maxOpen) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to close " + eldest.getKey(), e);
+                }
+                return true;
+            }
+        };
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("csv-flusher").factory());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void append(Path path, CharSequence rows) throws IOException {
+        OpenFile file = files.get(path);
+        if (file == null) {
+            file = open(path);
+            files.put(path, file);
+        }
+        file.writer.append(rows);
+    }
+
+    synchronized void flush() throws IOException {
+        for (OpenFile file : files.values()) {
+            file.writer.flush();
+        }
+    }
+
+    /**
+     * Flushes and fsyncs every open writer; called when a prefix is finished.
+     */
+    synchronized void sync() throws IOException {
+        for (OpenFile file : files.values()) {
+            file.writer.flush();
+            file.channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        sync();
+        IOException failure = null;
+        for (Iterator<OpenFile> it = files.values().iterator(); it.hasNext(); ) {
+            try {
+                it.next().close();
+            } catch (IOException e) {
+                failure = e;
+            }
+            it.remove();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private OpenFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (channel.size() == 0) {
+            writer.write('\ufeff');
+            writer.write(header);
+            writer.write(System.lineSeparator());
+        }
+        return new OpenFile(channel, writer);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Periodic flush failed: " + e.getMessage());
+        }
+    }
+
+    private record OpenFile(FileChannel channel, Writer writer) {
+
+        void close() throws IOException {
+            try (channel) {
+                writer.flush();
+            }
+        }
+    }
+}
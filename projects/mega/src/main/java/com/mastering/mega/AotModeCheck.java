@@ -0,0 +1,24 @@
+package com.mastering.mega;
+
+import com.mastering.mega.config.MegaProperties;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spring AOT evaluates the {@code mega.mode} conditions of the runners when the fast-startup profile builds the jar,
+ * with the default mode. Started from that jar in another mode, the context would silently run the crawl runner or no
+ * runner at all, so it fails instead.
+ */
+@Component
+public class AotModeCheck {
+
+    static final String AOT_MODE = "crawl"; // the mode process-aot runs with in pom.xml
+
+    public AotModeCheck(MegaProperties megaProperties) {
+        if (AotDetector.useGeneratedArtifacts() && !AOT_MODE.equals(megaProperties.getMode())) {
+            throw new IllegalStateException("This AOT-processed build only supports mega.mode=" + AOT_MODE + ", got mega.mode="
+                    + megaProperties.getMode() + "; start it without -Dspring.aot.enabled=true");
+        }
+    }
+}
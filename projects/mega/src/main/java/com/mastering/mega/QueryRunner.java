@@ -0,0 +1,74 @@
+package com.mastering.mega;
+
+import com.mastering.mega.number.inventory.InventoryLoader;
+import com.mastering.mega.number.inventory.NumberInventory;
+import com.mastering.mega.number.query.NumberMatch;
+import com.mastering.mega.number.query.NumberQuery;
+import com.mastering.mega.number.query.NumberQueryService;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@code --mega.mode=query --mask=996555X1111X [--category=3,67] [--min-price=0] [--max-price=3000] [--limit=100]}
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "mega", name = "mode", havingValue = "query")
+public class QueryRunner implements ApplicationRunner {
+    private final NumberQueryService queryService;
+    private final NumberInventory numberInventory;
+    private final InventoryLoader inventoryLoader;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (numberInventory.prefixes().isEmpty()) {
+            inventoryLoader.load();
+        }
+
+        NumberQuery query = NumberQuery.builder()
+                .mask(option(args, "mask", "996___XXXXXX"))
+                .categories(categories(option(args, "category", "")))
+                .minPrice(integer(option(args, "min-price", null)))
+                .maxPrice(integer(option(args, "max-price", null)))
+                .limit(Integer.parseInt(option(args, "limit", "100")))
+                .build();
+
+        long start = System.nanoTime();
+        List<NumberMatch> matches = queryService.query(query);
+        long micros = (System.nanoTime() - start) / 1_000;
+
+        System.out.println("MSISDN,NCLS_ID,CATEGORY_PRICE,NSTS_ID");
+        matches.forEach(match -> System.out.println(
+                match.msisdn() + "," + match.categoryId() + "," + match.price() + "," + match.status()));
+        log.info("{} matches for {} in {} us", matches.size(), query.getMask(), micros);
+    }
+
+    private static String option(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.getFirst();
+    }
+
+    private static Integer integer(String value) {
+        return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    private static Set<Integer> categories(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(Integer::valueOf)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,25 @@
+package com.mastering.mega;
+
+import com.mastering.mega.number.search.CrawlScheduler;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code --mega.mode=schedule --mega.diff.enabled=true [--mega.schedule.requests-per-hour=3600]}
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "mega", name = "mode", havingValue = "schedule")
+public class ScheduleRunner implements ApplicationRunner {
+    private final CrawlScheduler crawlScheduler;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        crawlScheduler.run();
+    }
+}
@@ -5,12 +5,14 @@ import com.mastering.mega.number.search.SearchServiceImpl;
 
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
 
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "mega", name = "mode", havingValue = "crawl", matchIfMissing = true)
 public class SearchRunner implements ApplicationRunner {
     private final SearchServiceImpl searchService;
     @Override
@@ -1,16 +1,27 @@
 package com.mastering.mega.config;
 
+import com.mastering.mega.number.client.AdaptiveRateLimiter;
+import com.mastering.mega.number.client.PageSizeController;
+import com.mastering.mega.number.client.ResilientCaller;
+import com.mastering.mega.number.metrics.CrawlMetrics;
 import com.mastering.mega.number.model.response.SearchResponse;
 import tools.jackson.dataformat.csv.CsvMapper;
 import tools.jackson.dataformat.csv.CsvSchema;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @Configuration
 @RequiredArgsConstructor
+@Slf4j
 public class AppConfig {
 
     @Bean
@@ -22,4 +33,48 @@ public class AppConfig {
     public CsvSchema searchResponseCsvSchema(CsvMapper csvMapper) {
         return csvMapper.schemaFor(SearchResponse.class).withHeader();
     }
+
+    @Bean
+    public JdkClientHttpRequestFactory megaRequestFactory(MegaProperties megaProperties) {
+        MegaProperties.Transport transport = megaProperties.getTransport();
+
+        // set by HttpClientSystemProperties unless given at launch
+        HttpClientSystemProperties.expected(transport).forEach((name, value) -> {
+            if (!value.equals(System.getProperty(name))) {
+                log.warn("{}={} from the JVM options overrides mega.transport ({})", name, System.getProperty(name), value);
+            }
+        });
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(transport.getHttpVersion())
+                .connectTimeout(Duration.ofMillis(transport.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(transport.getReadTimeoutMs()));
+        requestFactory.enableCompression(transport.isCompression());
+        return requestFactory;
+    }
+
+    @Bean
+    public AdaptiveRateLimiter searchRateLimiter(MegaProperties megaProperties) {
+        return new AdaptiveRateLimiter(megaProperties.getRateLimit());
+    }
+
+    @Bean
+    public PageSizeController pageSizeController(MegaProperties megaProperties) {
+        return new PageSizeController(megaProperties.getPageSize(), megaProperties.getLimit());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ResilientCaller searchCaller(MegaProperties megaProperties, CrawlMetrics crawlMetrics) {
+        return new ResilientCaller(megaProperties.getResilience(), crawlMetrics);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public CrawlMetrics crawlMetrics(MegaProperties megaProperties, AdaptiveRateLimiter searchRateLimiter) {
+        return new CrawlMetrics(megaProperties.getMetrics(), searchRateLimiter::getRate);
+    }
 }
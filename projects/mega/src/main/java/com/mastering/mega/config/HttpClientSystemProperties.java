@@ -0,0 +1,42 @@
+package com.mastering.mega.config;
+
+import org.springframework.boot.EnvironmentPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.util.Map;
+
+/**
+ * Turns {@code mega.transport} pool settings into the {@code jdk.httpclient.*} system properties. The JDK reads them
+ * once, when its connection pool is first used, so they are set as soon as the configuration is loaded and before any
+ * bean can build a client. A value given with {@code -D} at launch wins. Both are JVM-wide.
+ */
+public class HttpClientSystemProperties implements EnvironmentPostProcessor, Ordered {
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        MegaProperties.Transport transport = Binder.get(environment)
+                .bind("mega.transport", MegaProperties.Transport.class)
+                .orElseGet(MegaProperties.Transport::new);
+        expected(transport).forEach((name, value) -> {
+            if (System.getProperty(name) == null) {
+                System.setProperty(name, value);
+            }
+        });
+    }
+
+    // after ConfigDataEnvironmentPostProcessor has loaded application.yml
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    static Map<String, String> expected(MegaProperties.Transport transport) {
+        return Map.of(
+                "jdk.httpclient.keepalive.timeout", String.valueOf(transport.getKeepAliveTimeoutS()),
+                "jdk.httpclient.keepalive.timeout.h2", String.valueOf(transport.getKeepAliveTimeoutS()),
+                "jdk.httpclient.connectionPoolSize", String.valueOf(transport.getConnectionPoolSize()));
+    }
+}
@@ -9,6 +9,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.net.http.HttpClient;
+
 @Builder
 @Getter
 @Setter
@@ -17,16 +19,232 @@ import lombok.Setter;
 @Component
 @ConfigurationProperties("mega")
 public class MegaProperties {
+    @Builder.Default
+    private String mode = "crawl"; // crawl | query | schedule
+
     private String host;
     private String searchRoute;
     private int limit;
+    private boolean streaming; // decode pages token by token straight into the CSV writer
 
     private String searchUri;
 
+    @Builder.Default
+    private Transport transport = new Transport();
+
+    @Builder.Default
+    private Session session = new Session();
+
+    @Builder.Default
+    private Concurrency concurrency = new Concurrency();
+
+    @Builder.Default
+    private Pipeline pipeline = new Pipeline();
+
+    @Builder.Default
+    private RateLimit rateLimit = new RateLimit();
+
+    @Builder.Default
+    private Output output = new Output();
+
+    @Builder.Default
+    private Journal journal = new Journal();
+
+    @Builder.Default
+    private Sharding sharding = new Sharding();
+
+    @Builder.Default
+    private Diff diff = new Diff();
+
+    @Builder.Default
+    private Inventory inventory = new Inventory();
+
+    @Builder.Default
+    private Metrics metrics = new Metrics();
+
+    @Builder.Default
+    private Dedup dedup = new Dedup();
+
+    @Builder.Default
+    private Aggregate aggregate = new Aggregate();
+
+    @Builder.Default
+    private PageSize pageSize = new PageSize();
+
+    @Builder.Default
+    private Schedule schedule = new Schedule();
+
+    @Builder.Default
+    private Resilience resilience = new Resilience();
+
+    @Builder.Default
+    private Cache cache = new Cache();
+
+    @Builder.Default
+    private Sink sink = new Sink();
+
     public String getSearchUri() {
         if (searchUri == null) {
             searchUri = host + searchRoute;
         }
         return searchUri;
     }
+
+    @Getter
+    @Setter
+    public static class Transport {
+        private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2; // falls back to 1.1 if not negotiated
+        private boolean compression = true; // Accept-Encoding gzip/deflate, decoded transparently
+        private long connectTimeoutMs = 5_000;
+        private long readTimeoutMs = 30_000;
+        private long keepAliveTimeoutS = 60;
+        private int connectionPoolSize = 0; // HTTP/1.1 idle connections kept, 0 means unbounded
+    }
+
+    @Getter
+    @Setter
+    public static class Session {
+        private int poolSize = 1; // independently refreshed cookie sessions
+    }
+
+    @Getter
+    @Setter
+    public static class Concurrency {
+        private boolean enabled = false;
+        private int maxConcurrency = 4; // prefixes crawled at the same time
+        private int maxPerHost = 2; // in-flight requests per host
+    }
+
+    @Getter
+    @Setter
+    public static class Pipeline {
+        private boolean enabled = false;
+        private int queueDepth = 4; // fetched pages waiting for the writer
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+        private double initialRate = 1.0; // requests per second
+        private double minRate = 0.2;
+        private double maxRate = 20.0;
+        private double burst = 2.0;
+        private double increaseStep = 0.1;
+        private double decreaseFactor = 0.5;
+        private long slowResponseMs = 10_000;
+        private long decreaseCooldownMs = 2_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Output {
+        private String directory = ".";
+        private boolean csv = true; // <prefix>.csv, with no output enabled at all records go to NullSink
+        private boolean partitionByCategory = false; // one file per prefix and NCLS_ID
+        private boolean binary = false; // also write <prefix>.bin, see BinaryInventoryReader
+        private int bufferSize = 1 << 20;
+        private int flushRecords = 50_000; // group commit size per partition
+        private long flushIntervalMs = 5_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        private boolean enabled = false;
+        private String file = "crawl.journal"; // relative to output.directory
+    }
+
+    @Getter
+    @Setter
+    public static class Sharding {
+        private boolean enabled = false;
+        private int maxDepth = -1; // fixed leading digits, -1 derives it from limit
+    }
+
+    @Getter
+    @Setter
+    public static class Diff {
+        private boolean enabled = false;
+        private String directory = "snapshot"; // relative to output.directory
+    }
+
+    @Getter
+    @Setter
+    public static class Inventory {
+        private boolean enabled = false; // keep crawled numbers in NumberInventory
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+        private boolean enabled = true;
+        private boolean jmx = true; // CrawlMetrics MXBean on the platform MBean server
+        private long summaryIntervalMs = 10_000; // summary log line while requests flow, 0 disables it
+    }
+
+    @Getter
+    @Setter
+    public static class Dedup {
+        private boolean enabled = true; // drop numbers already written for the prefix in this run
+    }
+
+    @Getter
+    @Setter
+    public static class Aggregate {
+        private boolean enabled = true; // per prefix/category totals in <output.directory>/summary.csv
+        private int[] priceTiers = {500, 3000, 7500, 15000, 30000}; // ascending lower bounds of the histogram tiers
+    }
+
+    @Getter
+    @Setter
+    public static class PageSize {
+        private boolean enabled = false; // steer limit between min-limit and max-limit, see PageSizeController
+        private int minLimit = 100;
+        private int maxLimit = 20_000;
+        private int quantum = 100; // chosen limits are multiples of this
+        private long targetLatencyMs = 3_000;
+        private long targetBytes = 8L << 20; // decoded response body
+        private int window = 8; // pages per decision
+    }
+
+    @Getter
+    @Setter
+    public static class Schedule {
+        private long requestsPerHour = 3_600; // shared by all prefixes, intervals are planned to fit it
+        private long minIntervalMs = 600_000;
+        private long maxIntervalMs = 86_400_000;
+        private double smoothing = 0.5; // weight of the latest crawl in the change-rate estimate
+        private String stateFile = "schedule.state"; // relative to output.directory
+    }
+
+    @Getter
+    @Setter
+    public static class Resilience {
+        private int maxAttempts = 4;
+        private long backoffBaseMs = 250; // full jitter: uniform in [0, min(backoff-max-ms, base * 2^retry)]
+        private long backoffMaxMs = 10_000;
+        private long attemptTimeoutMs = 45_000; // whole exchange of one attempt, body included
+        private int breakerFailures = 5; // consecutive failures that open a host's circuit
+        private long breakerOpenMs = 30_000;
+        private boolean hedge = false; // duplicate a slow page request, not used for streaming
+        private double hedgeQuantile = 0.95; // of past attempt durations
+        private long hedgeMinDelayMs = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = false; // keep search responses on disk, see ResponseCache
+        private boolean replay = false; // serve only from the cache, a missing page fails the crawl
+        private String directory = "cache"; // relative to output.directory unless absolute
+        private long ttlMs = 86_400_000; // 0 keeps entries forever, ignored in replay
+    }
+
+    @Getter
+    @Setter
+    public static class Sink {
+        private boolean async = true; // one thread per sink, false writes on the fetching thread
+        private int queueDepth = 16; // batches waiting per sink before fetchers block
+        private int batchSize = 1_000; // streamed records handed over at once
+    }
 }
@@ -0,0 +1,84 @@
+package com.mastering.mega.number;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One cookie session of the {@link MegaSessionManager} pool. Refreshes are single-flight: the first caller that
+ * reports a stale generation performs the handshake, concurrent callers wait for its result, and callers that
+ * saw an older generation than the current one get the fresh cookie without another handshake.
+ */
+public class MegaSession {
+
+    public static final String ATTRIBUTE = MegaSession.class.getName();
+
+    @Getter
+    private final int id;
+    @Getter
+    private volatile String cookie;
+    @Getter
+    private volatile long generation;
+
+    private final AtomicInteger leases = new AtomicInteger();
+    private CompletableFuture<String> refreshing;
+
+    public MegaSession(int id) {
+        this.id = id;
+    }
+
+    public String refresh(long staleGeneration, Supplier<String> handshake) {
+        CompletableFuture<String> flight;
+        boolean leader = false;
+
+        synchronized (this) {
+            if (cookie != null && generation != staleGeneration) {
+                return cookie;
+            }
+            if (refreshing == null) {
+                refreshing = new CompletableFuture<>();
+                leader = true;
+            }
+            flight = refreshing;
+        }
+
+        if (leader) {
+            try {
+                String fresh = handshake.get();
+                synchronized (this) {
+                    cookie = fresh;
+                    generation++;
+                    refreshing = null;
+                }
+                flight.complete(fresh);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    refreshing = null;
+                }
+                flight.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    int leases() {
+        return leases.get();
+    }
+
+    void lease() {
+        leases.incrementAndGet();
+    }
+
+    void release() {
+        leases.decrementAndGet();
+    }
+}
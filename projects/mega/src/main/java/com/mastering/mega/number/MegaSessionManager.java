@@ -2,35 +2,98 @@ package com.mastering.mega.number;
 
 
 import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.metrics.ResponseBytesInterceptor;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 @Component
 @Slf4j
-@Getter
 public class MegaSessionManager {
 
-    private volatile String cookieHeader = null;
-
+    @Getter
     private final RestClient client;
+    private final RestClient handshakeClient;
     private final MegaProperties megaProperties;
+    private final CrawlMetrics crawlMetrics;
+
+    private final List<MegaSession> sessions;
 
-    public MegaSessionManager(MegaProperties megaProperties) {
-        client = RestClient.create();
+    public MegaSessionManager(MegaProperties megaProperties,
+                              @Qualifier("megaRequestFactory") ClientHttpRequestFactory megaRequestFactory,
+                              CrawlMetrics crawlMetrics) {
         this.megaProperties = megaProperties;
+        this.crawlMetrics = crawlMetrics;
+        this.sessions = IntStream.range(0, Math.max(1, megaProperties.getSession().getPoolSize()))
+                .mapToObj(MegaSession::new)
+                .toList();
+        this.handshakeClient = RestClient.builder()
+                .requestFactory(megaRequestFactory)
+                .build();
+        this.client = RestClient.builder()
+                .requestFactory(megaRequestFactory)
+                .requestInterceptor(new SessionCookieInterceptor(sessions.getFirst()))
+                .requestInterceptor(new ResponseBytesInterceptor(crawlMetrics))
+                .build();
+    }
+
+    public void refreshSession() {
+        sessions.forEach(session -> refresh(session, session.getGeneration()));
+    }
+
+    public String getCurrentCookie() {
+        MegaSession session = sessions.getFirst();
+        if (session.getCookie() == null) {
+            refresh(session, session.getGeneration());
+        }
+        return session.getCookie();
+    }
+
+    /**
+     * Leases the least used session; the caller attaches it as the {@link MegaSession#ATTRIBUTE} request attribute.
+     */
+    public MegaSession borrow() {
+        MegaSession session = sessions.stream()
+                .min(Comparator.comparingInt(MegaSession::leases))
+                .orElseThrow();
+        session.lease();
+        if (session.getCookie() == null) {
+            try {
+                refresh(session, session.getGeneration());
+            } catch (RuntimeException e) {
+                session.release();
+                throw e;
+            }
+        }
+        return session;
+    }
+
+    public void release(MegaSession session) {
+        session.release();
     }
 
-    public synchronized void refreshSession() {
+    /**
+     * Replaces a cookie the server rejected. {@code staleGeneration} is the generation the failed request used.
+     */
+    public String refresh(MegaSession session, long staleGeneration) {
+        return session.refresh(staleGeneration, this::handshake);
+    }
+
+    private String handshake() {
         try {
-            ResponseEntity<Void> response = client.get()
+            ResponseEntity<Void> response = handshakeClient.get()
                     .uri(megaProperties.getSearchUri())
                     .retrieve()
                     .toBodilessEntity();
@@ -56,23 +119,13 @@ public class MegaSessionManager {
                 throw new RuntimeException("Not found (PHPSESSID or _lang_)");
             }
 
-            this.cookieHeader = cookieBuilder.toString();
+            String cookieHeader = cookieBuilder.toString();
+            crawlMetrics.onSessionRefresh();
             log.info("Success set session: {}", cookieHeader);
+            return cookieHeader;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
-
-    public String getCurrentCookie() {
-        if (cookieHeader == null) {
-            refreshSession();
-        }
-        return cookieHeader;
-    }
-
-    public void invalidateAndRefresh() {
-        this.cookieHeader = null;
-        refreshSession();
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package com.mastering.mega.number;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+/**
+ * Sends the cookie of the session passed as the {@link MegaSession#ATTRIBUTE} request attribute,
+ * or of the default session when the request carries none.
+ */
+@RequiredArgsConstructor
+public class SessionCookieInterceptor implements ClientHttpRequestInterceptor {
+
+    private final MegaSession defaultSession;
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        MegaSession session = request.getAttributes().get(MegaSession.ATTRIBUTE) instanceof MegaSession attached
+                ? attached
+                : defaultSession;
+
+        String cookie = session.getCookie();
+        if (cookie != null) {
+            request.getHeaders().set(HttpHeaders.COOKIE, cookie);
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mastering.mega.number.client;
+
+import com.mastering.mega.config.MegaProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket whose refill rate follows AIMD: every fast successful response adds {@code increaseStep}
+ * requests/s, every throttling signal (429, 5xx, a slow response or an exchange that failed on I/O or timed out)
+ * multiplies the rate by {@code decreaseFactor}.
+ */
+@Slf4j
+public class AdaptiveRateLimiter {
+
+    private final double minRate;
+    private final double maxRate;
+    private final double burst;
+    private final double increaseStep;
+    private final double decreaseFactor;
+    private final long slowResponseNanos;
+    private final long decreaseCooldownNanos;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long lastDecrease;
+
+    public AdaptiveRateLimiter(MegaProperties.RateLimit config) {
+        this.minRate = config.getMinRate();
+        this.maxRate = Math.max(config.getMaxRate(), minRate);
+        this.burst = Math.max(1, config.getBurst());
+        this.increaseStep = config.getIncreaseStep();
+        this.decreaseFactor = config.getDecreaseFactor();
+        this.slowResponseNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowResponseMs());
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(config.getDecreaseCooldownMs());
+        this.rate = Math.clamp(config.getInitialRate(), minRate, maxRate);
+        this.tokens = 1;
+        this.lastRefill = System.nanoTime();
+        this.lastDecrease = lastRefill - decreaseCooldownNanos;
+    }
+
+    public void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + waitNanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a request slot");
+            }
+        }
+    }
+
+    public void onResponse(int status, long latencyNanos) {
+        if (status == 429 || status >= 500 || latencyNanos > slowResponseNanos) {
+            decrease("status " + status, latencyNanos);
+        } else if (status >= 200 && status < 300) {
+            increase();
+        }
+    }
+
+    /**
+     * An exchange that got no response: refused, reset or timed out.
+     */
+    public void onFailure(long latencyNanos) {
+        decrease("no response", latencyNanos);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * 1_000_000_000L);
+    }
+
+    private synchronized void increase() {
+        refill(System.nanoTime());
+        rate = Math.min(maxRate, rate + increaseStep);
+    }
+
+    private synchronized void decrease(String cause, long latencyNanos) {
+        long now = System.nanoTime();
+        refill(now);
+        // responses already in flight report the same overload, one cut per cooldown is enough
+        if (now - lastDecrease < decreaseCooldownNanos) {
+            return;
+        }
+        lastDecrease = now;
+        rate = Math.max(minRate, rate * decreaseFactor);
+        log.info("Backing off to {} req/s ({}, {} ms)", String.format("%.2f", rate), cause,
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1_000_000_000L);
+        lastRefill = now;
+    }
+}
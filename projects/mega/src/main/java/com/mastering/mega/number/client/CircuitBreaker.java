@@ -0,0 +1,86 @@
+package com.mastering.mega.number.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit of one host. After {@code failureThreshold} consecutive failures it opens and callers wait instead of
+ * sending; once {@code openMs} has passed a single probe goes through, closing the circuit on success and opening it
+ * again on failure.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    /**
+     * Blocks while the circuit is open or another probe is in flight; returns whether the caller is the probe.
+     */
+    public synchronized boolean acquire() throws InterruptedException {
+        while (true) {
+            if (state == State.CLOSED) {
+                return false;
+            }
+            long remaining = openedAt + openNanos - System.nanoTime();
+            if (state == State.OPEN && remaining <= 0) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN && !probing) {
+                probing = true;
+                return true;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, state == State.OPEN ? remaining : openNanos);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Circuit {} closed", name);
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+        notifyAll();
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            log.warn("Circuit {} open for {} ms after {} failures", name, TimeUnit.NANOSECONDS.toMillis(openNanos), failures);
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+        probing = false;
+        notifyAll();
+    }
+
+    /**
+     * Ends an attempt that says nothing about the host, such as a cancelled one.
+     */
+    public synchronized void release(boolean probe) {
+        if (probe && probing) {
+            probing = false;
+            notifyAll();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
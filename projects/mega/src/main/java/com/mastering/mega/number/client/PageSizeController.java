@@ -0,0 +1,107 @@
+package com.mastering.mega.number.client;
+
+import com.mastering.mega.config.MegaProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the search page size. Over a moving window of pages it fits {@code latency = a + b * records} and the bytes
+ * per record, then steers the limit toward whichever of the target response time and target body size binds first.
+ * A decision is taken once per window, moves the limit at most by a factor of two and is skipped when the change
+ * would be under 20%.
+ */
+@Slf4j
+public class PageSizeController {
+
+    private static final double MIN_CHANGE = 0.2;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int quantum;
+    private final long targetLatencyNanos;
+    private final long targetBytes;
+
+    private final int[] records;
+    private final long[] latencies;
+    private final long[] bytes;
+    private int observed;
+    private int sinceDecision;
+    private int limit;
+
+    public PageSizeController(MegaProperties.PageSize config, int initialLimit) {
+        this.enabled = config.isEnabled();
+        this.minLimit = Math.max(1, config.getMinLimit());
+        this.maxLimit = Math.max(minLimit, config.getMaxLimit());
+        this.quantum = Math.max(1, config.getQuantum());
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetLatencyMs());
+        this.targetBytes = config.getTargetBytes();
+        int window = Math.max(2, config.getWindow());
+        this.records = new int[window];
+        this.latencies = new long[window];
+        this.bytes = new long[window];
+        this.limit = enabled ? Math.clamp(initialLimit, minLimit, maxLimit) : initialLimit;
+    }
+
+    public synchronized int limit() {
+        return limit;
+    }
+
+    /**
+     * Feeds one successful page; {@code responseBytes} is 0 when the size is unknown.
+     */
+    public synchronized void observe(int pageRecords, long latencyNanos, long responseBytes) {
+        if (!enabled || pageRecords <= 0) {
+            return;
+        }
+        int slot = observed++ % records.length;
+        records[slot] = pageRecords;
+        latencies[slot] = latencyNanos;
+        bytes[slot] = responseBytes;
+        if (++sinceDecision >= records.length) {
+            sinceDecision = 0;
+            decide();
+        }
+    }
+
+    private void decide() {
+        int n = Math.min(observed, records.length);
+        double meanRecords = 0;
+        double meanLatency = 0;
+        long totalBytes = 0;
+        long totalRecords = 0;
+        for (int i = 0; i < n; i++) {
+            meanRecords += records[i];
+            meanLatency += latencies[i];
+            totalBytes += bytes[i];
+            totalRecords += records[i];
+        }
+        meanRecords /= n;
+        meanLatency /= n;
+
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < n; i++) {
+            covariance += (records[i] - meanRecords) * (latencies[i] - meanLatency);
+            variance += (records[i] - meanRecords) * (records[i] - meanRecords);
+        }
+        // with a single page size in the window there is no slope to fit, charge everything per record
+        double perRecord = variance > 0 && covariance > 0 ? covariance / variance : meanLatency / meanRecords;
+        double fixed = Math.max(0, meanLatency - perRecord * meanRecords);
+
+        double desired = (targetLatencyNanos - fixed) / perRecord;
+        if (totalBytes > 0) {
+            desired = Math.min(desired, targetBytes / ((double) totalBytes / totalRecords));
+        }
+        desired = Math.clamp(desired, limit / 2.0, limit * 2.0);
+        int next = Math.clamp(Math.round(desired / quantum) * quantum, minLimit, maxLimit);
+
+        if (Math.abs(next - limit) >= limit * MIN_CHANGE) {
+            log.info("Page size {} -> {} (fixed {} ms + {} us/record, {} bytes/record)", limit, next,
+                    Math.round(fixed / 1e6), Math.round(perRecord / 1e3), totalRecords > 0 ? totalBytes / totalRecords : 0);
+            limit = next;
+        }
+    }
+}
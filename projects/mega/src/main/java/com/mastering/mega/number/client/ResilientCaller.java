@@ -0,0 +1,219 @@
+package com.mastering.mega.number.client;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.metrics.LatencyHistogram;
+
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serial;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry loop around one logical request. Each attempt runs on its own virtual thread under a deadline covering the
+ * whole exchange, body included. Failures wait a full-jitter backoff, a uniform pick in
+ * {@code [0, min(max, base * 2^retry)]}, while a stale session (400) is retried at once. Server errors, I/O errors and
+ * timeouts count against the per-host {@link CircuitBreaker}. An idempotent call can be hedged: once it has been
+ * running longer than the configured quantile of past attempts, a duplicate is sent and the first answer wins.
+ */
+@Slf4j
+public class ResilientCaller implements AutoCloseable {
+
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    private final MegaProperties.Resilience config;
+    private final CrawlMetrics metrics;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder samples = new LongAdder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ResilientCaller(MegaProperties.Resilience config, CrawlMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs {@code attempt} until it succeeds, fails for good or runs out of attempts. {@code admit} runs on the calling
+     * thread before every attempt and hedge, outside the deadline, to wait for a rate limiter. {@code hedge} is only
+     * safe for calls without side effects.
+     */
+    public <T> T call(String uri, String description, boolean hedge, Runnable admit, Callable<T> attempt) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(hostOf(uri), host ->
+                new CircuitBreaker(host, config.getBreakerFailures(), config.getBreakerOpenMs()));
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+
+        for (int retry = 0; ; retry++) {
+            boolean probe;
+            try {
+                probe = breaker.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for circuit " + hostOf(uri), e);
+            }
+
+            RuntimeException failure;
+            boolean backoff;
+            try {
+                admit.run();
+                long start = System.nanoTime();
+                T result = attempt(admit, attempt, hedge && !probe);
+                latency.record(System.nanoTime() - start);
+                samples.increment();
+                breaker.onSuccess();
+                return result;
+
+            } catch (HttpClientErrorException.BadRequest e) {
+                breaker.onSuccess();
+                failure = e;
+                backoff = false;
+
+            } catch (HttpClientErrorException.TooManyRequests e) {
+                breaker.onSuccess();
+                failure = e;
+                backoff = true;
+
+            } catch (HttpServerErrorException | ResourceAccessException | AttemptTimeoutException e) {
+                breaker.onFailure();
+                failure = e;
+                backoff = true;
+
+            } catch (HttpStatusCodeException e) {
+                breaker.onSuccess();
+                throw e;
+
+            } catch (RuntimeException e) {
+                breaker.release(probe);
+                throw e;
+            }
+
+            if (retry + 1 >= maxAttempts) {
+                throw failure;
+            }
+            metrics.onRetry();
+            long delay = backoff ? backoffMillis(retry) : 0;
+            log.warn("{} failed ({}), attempt {} of {} in {} ms", description, reason(failure), retry + 2, maxAttempts, delay);
+            sleep(delay);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    long backoffMillis(int retry) {
+        long ceiling = Math.min(config.getBackoffMaxMs(), config.getBackoffBaseMs() << Math.min(retry, 30));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    // one attempt, plus its hedge when it runs past the hedge delay; both share the deadline
+    private <T> T attempt(Runnable admit, Callable<T> attempt, boolean hedge) {
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Future<T>> running = new ArrayList<>(2);
+        long start = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(config.getAttemptTimeoutMs());
+        long deadline = start + timeout;
+        long hedgeDelay = hedge ? hedgeDelayNanos() : -1;
+        boolean hedgeable = hedgeDelay >= 0 && hedgeDelay < timeout;
+        running.add(completion.submit(attempt));
+
+        try {
+            int pending = 1;
+            ExecutionException failure = null;
+            while (pending > 0) {
+                long now = System.nanoTime();
+                long until = hedgeable && running.size() == 1 ? start + hedgeDelay : deadline;
+                Future<T> done = completion.poll(Math.max(0, until - now), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (System.nanoTime() - deadline >= 0) {
+                        throw new AttemptTimeoutException(config.getAttemptTimeoutMs());
+                    }
+                    admit.run();
+                    metrics.onHedge();
+                    running.add(completion.submit(attempt));
+                    pending++;
+                    continue;
+                }
+                pending--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    failure = e;
+                }
+            }
+            throw unwrap(failure);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a response", e);
+        } finally {
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+
+    // -1 until enough attempts have been timed
+    private long hedgeDelayNanos() {
+        if (samples.sum() < HEDGE_MIN_SAMPLES) {
+            return -1;
+        }
+        double millis = Math.max(config.getHedgeMinDelayMs(), latency.percentileMillis(config.getHedgeQuantile()));
+        return (long) (millis * 1_000_000);
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+    }
+
+    private static String reason(RuntimeException e) {
+        return e instanceof HttpStatusCodeException status ? status.getStatusCode().toString() : e.getMessage();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during backoff", e);
+        }
+    }
+
+    private static String hostOf(String uri) {
+        String host = URI.create(uri).getHost();
+        return host != null ? host : uri;
+    }
+
+    /**
+     * An attempt that ran past {@code mega.resilience.attempt-timeout-ms}.
+     */
+    public static class AttemptTimeoutException extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        AttemptTimeoutException(long timeoutMs) {
+            super("No response within " + timeoutMs + " ms");
+        }
+    }
+}
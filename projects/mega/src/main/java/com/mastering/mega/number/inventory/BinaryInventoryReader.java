@@ -0,0 +1,155 @@
+package com.mastering.mega.number.inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped view of a {@code <prefix>.bin} file written by {@link BinaryInventoryWriter}.
+ * <p>
+ * Layout, little-endian: a {@value #HEADER_SIZE}-byte header (magic, version, record size, prefix, flags, count,
+ * creation time) followed by {@value #RECORD_SIZE}-byte records {@code int suffix, int price, short NCLS_ID,
+ * short NSTS_ID}. A finished file is sorted by suffix without duplicates, so lookups are a binary search; one left
+ * behind by an interrupted crawl is in arrival order and falls back to a linear scan.
+ */
+public final class BinaryInventoryReader implements AutoCloseable {
+
+    public static final long MAGIC = 0x314E49424147454DL; // "MEGABIN1" on disk
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 12;
+    public static final int FLAG_SORTED = 1;
+
+    static final int PREFIX_OFFSET = 12;
+    static final int FLAGS_OFFSET = 16;
+    static final int COUNT_OFFSET = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String prefix;
+    private final int flags;
+    private final int count;
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(int suffix, int categoryId, int price, int status);
+    }
+
+    private BinaryInventoryReader(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary inventory file");
+        }
+        if (buffer.getShort(8) != VERSION || buffer.getShort(10) != RECORD_SIZE) {
+            throw new IllegalArgumentException("Unsupported binary inventory version " + buffer.getShort(8));
+        }
+        this.prefix = String.format("%03d", buffer.getInt(PREFIX_OFFSET));
+        this.flags = buffer.getInt(FLAGS_OFFSET);
+        // an unfinished file may hold more records than its header last saw
+        this.count = isSorted() ? buffer.getInt(COUNT_OFFSET) : (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    public static BinaryInventoryReader open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                return new BinaryInventoryReader(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map " + path, e);
+        }
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isSorted() {
+        return (flags & FLAG_SORTED) != 0;
+    }
+
+    /**
+     * Record index of the suffix, or -1 when the file does not hold it.
+     */
+    public int indexOf(int suffix) {
+        if (!isSorted()) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (suffix(i) == suffix) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = suffix(mid);
+            if (value < suffix) {
+                low = mid + 1;
+            } else if (value > suffix) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int suffix(int index) {
+        return buffer.getInt(offset(index));
+    }
+
+    public int price(int index) {
+        return buffer.getInt(offset(index) + 4);
+    }
+
+    public int categoryId(int index) {
+        return buffer.getShort(offset(index) + 8);
+    }
+
+    public int status(int index) {
+        return buffer.getShort(offset(index) + 10);
+    }
+
+    public void scan(Visitor visitor) {
+        ByteBuffer records = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            int suffix = records.getInt();
+            int price = records.getInt();
+            int categoryId = records.getShort();
+            visitor.visit(suffix, categoryId, price, records.getShort());
+        }
+    }
+
+    /**
+     * Closes the file; the mapping itself is released when the buffer is collected.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
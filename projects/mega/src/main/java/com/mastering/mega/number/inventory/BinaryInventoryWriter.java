@@ -0,0 +1,187 @@
+package com.mastering.mega.number.inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.FLAGS_OFFSET;
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.FLAG_SORTED;
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.HEADER_SIZE;
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.MAGIC;
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.RECORD_SIZE;
+import static com.mastering.mega.number.inventory.BinaryInventoryReader.VERSION;
+
+/**
+ * Appends fixed-width records to a {@code <prefix>.bin} file in arrival order; {@link #finish()} rewrites it sorted
+ * by suffix with duplicates dropped (the last record of a suffix wins). See {@link BinaryInventoryReader} for the
+ * layout.
+ */
+public final class BinaryInventoryWriter implements AutoCloseable {
+
+    private static final int BUFFER_RECORDS = 1 << 12;
+    private static final int INDEX_BITS = 24; // records per file stay below 2^24
+
+    private final Path path;
+    private final int prefix;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private int count;
+
+    private BinaryInventoryWriter(Path path, int prefix, FileChannel channel, int count) {
+        this.path = path;
+        this.prefix = prefix;
+        this.channel = channel;
+        this.count = count;
+    }
+
+    /**
+     * Opens the file for appending. With {@code resume} the records of an unfinished file are kept, otherwise the
+     * file starts empty.
+     */
+    public static BinaryInventoryWriter open(Path path, String prefix, boolean resume) {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int kept = resume ? unfinishedRecords(channel) : 0;
+            channel.truncate(HEADER_SIZE + (long) kept * RECORD_SIZE);
+
+            BinaryInventoryWriter writer = new BinaryInventoryWriter(path, Integer.parseInt(prefix), channel, kept);
+            writer.writeHeader(channel, 0, kept);
+            channel.position(channel.size());
+            return writer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + path, e);
+        }
+    }
+
+    public synchronized void append(int suffix, int categoryId, int price, int status) {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.putInt(suffix).putInt(price).putShort((short) categoryId).putShort((short) status);
+        count++;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Writes buffered records and the header count, leaving the file unsorted.
+     */
+    public synchronized void flush() {
+        drain();
+        try {
+            writeHeader(channel, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot flush " + path, e);
+        }
+    }
+
+    /**
+     * Sorts and deduplicates the records into a fresh file that replaces this one, then closes it.
+     */
+    public synchronized int finish() {
+        drain();
+        Path sorted = path.resolveSibling(path.getFileName() + ".tmp");
+        try (channel) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) count * RECORD_SIZE);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (long) records.getInt(i * RECORD_SIZE) << INDEX_BITS | i;
+            }
+            Arrays.sort(keys);
+
+            int unique = 0;
+            try (FileChannel out = FileChannel.open(sorted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.position(HEADER_SIZE);
+                ByteBuffer chunk = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < count; i++) {
+                    if (i + 1 < count && keys[i + 1] >>> INDEX_BITS == keys[i] >>> INDEX_BITS) {
+                        continue;
+                    }
+                    if (!chunk.hasRemaining()) {
+                        write(out, chunk);
+                    }
+                    int offset = (int) (keys[i] & ((1 << INDEX_BITS) - 1)) * RECORD_SIZE;
+                    chunk.put(records.slice(offset, RECORD_SIZE));
+                    unique++;
+                }
+                write(out, chunk);
+                writeHeader(out, FLAG_SORTED, unique);
+                out.force(true);
+            }
+            Files.move(sorted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return unique;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot finish " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try (channel) {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close " + path, e);
+        }
+    }
+
+    private void drain() {
+        try {
+            write(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+    }
+
+    private void writeHeader(FileChannel target, int flags, int records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) RECORD_SIZE)
+                .putInt(prefix)
+                .putInt(flags)
+                .putInt(records)
+                .putLong(System.currentTimeMillis());
+        header.flip();
+        while (header.hasRemaining()) {
+            target.write(header, header.position());
+        }
+    }
+
+    private static void write(FileChannel target, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            target.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    private static int unfinishedRecords(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getLong(0) != MAGIC || (header.getInt(FLAGS_OFFSET) & FLAG_SORTED) != 0) {
+            return 0;
+        }
+        // records past the header count were written but not yet flushed; a torn one at the end is dropped
+        return (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+    }
+}
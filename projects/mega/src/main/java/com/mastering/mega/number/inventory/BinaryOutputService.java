@@ -0,0 +1,114 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.util.NumberUtil;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PreDestroy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes {@code <prefix>.bin} next to the CSV output when {@code mega.output.binary} is on: records are appended
+ * while the prefix is crawled and the file is sorted once the prefix is finished.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BinaryOutputService {
+
+    private final MegaProperties megaProperties;
+
+    private final Map<String, BinaryInventoryWriter> writers = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return megaProperties.getOutput().isBinary();
+    }
+
+    public static Path path(String directory, String prefix) {
+        return Path.of(directory, prefix + ".bin");
+    }
+
+    /**
+     * Starts the prefix; a resumed one keeps the records appended before the restart.
+     */
+    public void begin(String prefix, boolean resumed) {
+        if (!isEnabled()) {
+            return;
+        }
+        BinaryInventoryWriter previous = writers.put(prefix,
+                BinaryInventoryWriter.open(path(megaProperties.getOutput().getDirectory(), prefix), prefix, resumed));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public void record(String prefix, List<SearchResponse> records) {
+        if (!isEnabled()) {
+            return;
+        }
+        BinaryInventoryWriter writer = writers.get(prefix);
+        records.forEach(record -> append(writer, record));
+    }
+
+    public void record(String prefix, SearchResponse record) {
+        if (isEnabled()) {
+            append(writers.get(prefix), record);
+        }
+    }
+
+    /**
+     * Writes the records buffered for the prefix to the file, so a resumed crawl finds everything recorded so far.
+     */
+    public void flush(String prefix) {
+        BinaryInventoryWriter writer = writers.get(prefix);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Leaves the unsorted file in place so a resumed crawl can continue it.
+     */
+    public void discard(String prefix) {
+        BinaryInventoryWriter writer = writers.remove(prefix);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public void complete(String prefix) {
+        BinaryInventoryWriter writer = writers.remove(prefix);
+        if (writer == null) {
+            return;
+        }
+        int appended = writer.size();
+        int unique = writer.finish();
+        log.info("Wrote {} numbers to {}.bin ({} duplicates dropped)", unique, prefix, appended - unique);
+    }
+
+    @PreDestroy
+    public void close() {
+        writers.values().forEach(BinaryInventoryWriter::close);
+        writers.clear();
+    }
+
+    private static void append(BinaryInventoryWriter writer, SearchResponse record) {
+        int suffix = NumberUtil.msisdnSuffix(record.getMSISDN());
+        if (suffix < 0) {
+            return;
+        }
+        Integer categoryId = NumberUtil.tryParseIntWithSpaces(record.getNCLS_ID());
+        Integer price = NumberUtil.tryParseIntWithSpaces(record.getCATEGORY_PRICE());
+        Integer status = NumberUtil.tryParseIntWithSpaces(record.getNSTS_ID());
+        writer.append(suffix, categoryId != null ? categoryId : 0, price != null ? price : 0, status != null ? status : 0);
+    }
+}
@@ -0,0 +1,232 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.config.CategoryProperties;
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.Category;
+import com.mastering.mega.number.model.CategoryItem;
+import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.util.NumberUtil;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running count, price sum, min/max and price-tier histogram per prefix and category, kept in arrays indexed by
+ * {@link CategoryIndex}. Prefixes finished in this run are written to {@code summary.csv} at the end, without
+ * another pass over the output.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryAggregator {
+
+    private static final String REPORT = "summary.csv";
+
+    private final MegaProperties megaProperties;
+    private final CategoryProperties categoryProperties;
+    private final CategoryIndex categoryIndex;
+
+    private final Map<String, PrefixTotals> running = new ConcurrentHashMap<>();
+    private final Map<String, PrefixTotals> finished = new ConcurrentHashMap<>();
+    private final Set<String> incomplete = ConcurrentHashMap.newKeySet();
+
+    public boolean isEnabled() {
+        return megaProperties.getAggregate().isEnabled();
+    }
+
+    public void begin(String prefix) {
+        if (isEnabled()) {
+            running.put(prefix, new PrefixTotals(categoryIndex.size() + 1, megaProperties.getAggregate().getPriceTiers()));
+            finished.remove(prefix);
+        }
+    }
+
+    public void record(String prefix, List<SearchResponse> records) {
+        if (!isEnabled()) {
+            return;
+        }
+        PrefixTotals totals = running.get(prefix);
+        synchronized (totals) {
+            records.forEach(record -> add(totals, record));
+        }
+    }
+
+    public void record(String prefix, SearchResponse record) {
+        if (!isEnabled()) {
+            return;
+        }
+        PrefixTotals totals = running.get(prefix);
+        synchronized (totals) {
+            add(totals, record);
+        }
+    }
+
+    /**
+     * Pages crawled before a restart are not counted, so a resumed prefix is left out of the report.
+     */
+    public void markIncomplete(String prefix) {
+        if (isEnabled() && incomplete.add(prefix)) {
+            log.warn("Prefix {} resumed mid-crawl, it will not be in {}", prefix, REPORT);
+        }
+    }
+
+    public void discard(String prefix) {
+        running.remove(prefix);
+        incomplete.remove(prefix);
+    }
+
+    public void complete(String prefix) {
+        PrefixTotals totals = running.remove(prefix);
+        if (totals != null && !incomplete.remove(prefix)) {
+            finished.put(prefix, totals);
+        }
+    }
+
+    /**
+     * Writes the finished prefixes to {@code summary.csv} and logs one line per prefix.
+     */
+    public void writeReport() {
+        if (!isEnabled() || finished.isEmpty()) {
+            return;
+        }
+        int[] tiers = megaProperties.getAggregate().getPriceTiers();
+        Map<Integer, String> names = categoryNames();
+        Path path = Path.of(megaProperties.getOutput().getDirectory(), REPORT);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("PREFIX,NCLS_ID,CATEGORY_NAME,COUNT,PRICE_SUM,AVG_PRICE,MIN_PRICE,MAX_PRICE");
+            for (int tier = 0; tier <= tiers.length; tier++) {
+                writer.write(',');
+                writer.write(tierLabel(tiers, tier));
+            }
+            writer.newLine();
+
+            for (Map.Entry<String, PrefixTotals> entry : new TreeMap<>(finished).entrySet()) {
+                PrefixTotals totals = entry.getValue();
+                for (int category = 0; category < totals.count.length; category++) {
+                    if (totals.count[category] == 0) {
+                        continue;
+                    }
+                    int id = categoryIndex.idOf((byte) category);
+                    writer.write(entry.getKey() + "," + (id >= 0 ? id : "") + "," + names.getOrDefault(id, "")
+                            + "," + totals.count[category]
+                            + "," + totals.priceSum[category]
+                            + "," + totals.priceSum[category] / totals.count[category]
+                            + "," + totals.minPrice[category]
+                            + "," + totals.maxPrice[category]);
+                    for (int tier = 0; tier <= tiers.length; tier++) {
+                        writer.write(',');
+                        writer.write(Long.toString(totals.histogram[category * (tiers.length + 1) + tier]));
+                    }
+                    writer.newLine();
+                }
+                log.info("Prefix {}: {} numbers worth {} in total, by category {}",
+                        entry.getKey(), totals.total(), totals.totalPrice(), totals.describe(categoryIndex));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+        log.info("Wrote {} for {} prefixes", path, finished.size());
+    }
+
+    private void add(PrefixTotals totals, SearchResponse record) {
+        byte category = categoryIndex.indexOf(record.getNCLS_ID());
+        Integer price = NumberUtil.tryParseIntWithSpaces(record.getCATEGORY_PRICE());
+        totals.add(category, price != null ? price : categoryIndex.priceOf(category));
+    }
+
+    // items are reported under the name of the category that lists them
+    private Map<Integer, String> categoryNames() {
+        Map<Integer, String> names = new HashMap<>();
+        for (Category category : categoryProperties.getCategoriesMap().values()) {
+            names.put(category.getId(), category.getName());
+            for (CategoryItem item : category.getItems()) {
+                names.put(item.id(), category.getName());
+            }
+        }
+        return names;
+    }
+
+    private static String tierLabel(int[] tiers, int tier) {
+        if (tiers.length == 0) {
+            return "ALL";
+        }
+        if (tier == 0) {
+            return "<" + tiers[0];
+        }
+        if (tier == tiers.length) {
+            return ">=" + tiers[tiers.length - 1];
+        }
+        return tiers[tier - 1] + "-" + (tiers[tier] - 1);
+    }
+
+    private static class PrefixTotals {
+        private final int[] tiers;
+        private final long[] count;
+        private final long[] priceSum;
+        private final int[] minPrice;
+        private final int[] maxPrice;
+        private final long[] histogram; // category * (tiers + 1) + tier
+
+        PrefixTotals(int categories, int[] tiers) {
+            this.tiers = tiers;
+            this.count = new long[categories];
+            this.priceSum = new long[categories];
+            this.minPrice = new int[categories];
+            this.maxPrice = new int[categories];
+            this.histogram = new long[categories * (tiers.length + 1)];
+            Arrays.fill(minPrice, Integer.MAX_VALUE);
+        }
+
+        void add(byte category, int price) {
+            count[category]++;
+            priceSum[category] += price;
+            minPrice[category] = Math.min(minPrice[category], price);
+            maxPrice[category] = Math.max(maxPrice[category], price);
+            histogram[category * (tiers.length + 1) + tier(price)]++;
+        }
+
+        long total() {
+            return Arrays.stream(count).sum();
+        }
+
+        long totalPrice() {
+            return Arrays.stream(priceSum).sum();
+        }
+
+        String describe(CategoryIndex categoryIndex) {
+            StringBuilder sb = new StringBuilder();
+            for (int category = 0; category < count.length; category++) {
+                if (count[category] > 0) {
+                    if (!sb.isEmpty()) {
+                        sb.append(", ");
+                    }
+                    int id = categoryIndex.idOf((byte) category);
+                    sb.append(id >= 0 ? Integer.toString(id) : "?").append('=').append(count[category]);
+                }
+            }
+            return sb.toString();
+        }
+
+        private int tier(int price) {
+            int position = Arrays.binarySearch(tiers, price);
+            return position >= 0 ? position + 1 : -position - 1;
+        }
+    }
+}
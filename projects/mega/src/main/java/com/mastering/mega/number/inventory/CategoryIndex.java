@@ -0,0 +1,67 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.config.CategoryProperties;
+import com.mastering.mega.number.model.CategoryItem;
+import com.mastering.mega.util.NumberUtil;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Dense byte index over {@link CategoryProperties#getNodesMap()}: index 0 means "no category",
+ * 1..size() map to the configured category ids in ascending order.
+ */
+@Component
+public class CategoryIndex {
+
+    public static final byte NONE = 0;
+
+    private final int[] ids;
+    private final int[] prices;
+    private final byte[] indexById;
+
+    public CategoryIndex(CategoryProperties categoryProperties) {
+        Map<Integer, CategoryItem> nodes = categoryProperties.getNodesMap();
+        int[] sorted = nodes.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        if (sorted.length > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many categories for a byte index: " + sorted.length);
+        }
+
+        ids = new int[sorted.length + 1];
+        prices = new int[sorted.length + 1];
+        indexById = new byte[sorted.length == 0 ? 1 : sorted[sorted.length - 1] + 1];
+        for (int i = 0; i < sorted.length; i++) {
+            CategoryItem item = nodes.get(sorted[i]);
+            ids[i + 1] = sorted[i];
+            prices[i + 1] = item != null ? item.price() : 0;
+            indexById[sorted[i]] = (byte) (i + 1);
+        }
+    }
+
+    public int size() {
+        return ids.length - 1;
+    }
+
+    public byte indexOf(int id) {
+        return id >= 0 && id < indexById.length ? indexById[id] : NONE;
+    }
+
+    public byte indexOf(String id) {
+        Integer parsed = NumberUtil.tryParseIntWithSpaces(id);
+        return parsed != null ? indexOf(parsed) : NONE;
+    }
+
+    public int idOf(byte index) {
+        return index > 0 && index < ids.length ? ids[index] : -1;
+    }
+
+    public int priceOf(byte index) {
+        return index > 0 && index < prices.length ? prices[index] : 0;
+    }
+
+    public int[] ids() {
+        return Arrays.copyOfRange(ids, 1, ids.length);
+    }
+}
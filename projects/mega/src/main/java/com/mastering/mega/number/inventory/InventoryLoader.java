@@ -0,0 +1,125 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.response.SearchResponse;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.dataformat.csv.CsvMapper;
+import tools.jackson.dataformat.csv.CsvSchema;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Fills {@link NumberInventory} from the crawl output: a finished {@code 550.bin} when there is one and no CSV of the
+ * prefix was written after it, otherwise {@code 550.csv}, or {@code 550_3.csv} when partitioned.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryLoader {
+
+    private static final Pattern PARTITION = Pattern.compile("(\\d{3})(_[^.]+)?\\.csv");
+    private static final Pattern BINARY = Pattern.compile("(\\d{3})\\.bin");
+
+    @Qualifier("csvMapper")
+    private final CsvMapper csvMapper;
+
+    @Qualifier("searchResponseCsvSchema")
+    private final CsvSchema schema;
+
+    private final MegaProperties megaProperties;
+    private final NumberInventory numberInventory;
+    private final CategoryIndex categoryIndex;
+
+    public long load() {
+        Path directory = Path.of(megaProperties.getOutput().getDirectory());
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list " + directory, e);
+        }
+
+        long records = 0;
+        int read = 0;
+        Set<String> loaded = new HashSet<>();
+        for (Path file : files) {
+            Matcher matcher = BINARY.matcher(file.getFileName().toString());
+            if (matcher.matches() && !isStale(file, matcher.group(1), files)) {
+                long binaryRecords = loadBinary(matcher.group(1), file);
+                if (binaryRecords >= 0) {
+                    records += binaryRecords;
+                    loaded.add(matcher.group(1));
+                    read++;
+                }
+            }
+        }
+        for (Path file : files) {
+            Matcher matcher = PARTITION.matcher(file.getFileName().toString());
+            if (matcher.matches() && !loaded.contains(matcher.group(1))) {
+                records += load(matcher.group(1), file);
+                read++;
+            }
+        }
+        log.info("Loaded {} numbers from {} files in {}", records, read, directory);
+        return records;
+    }
+
+    // a crawl with binary output off leaves the .bin of an earlier one behind
+    private static boolean isStale(Path binary, String prefix, List<Path> files) {
+        try {
+            FileTime written = Files.getLastModifiedTime(binary);
+            for (Path file : files) {
+                Matcher matcher = PARTITION.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(1).equals(prefix)
+                        && Files.getLastModifiedTime(file).compareTo(written) > 0) {
+                    log.info("Ignoring {}, {} is newer", binary.getFileName(), file.getFileName());
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the modification time of " + binary, e);
+        }
+    }
+
+    // -1 when the file was left unfinished, the CSV is used instead
+    private long loadBinary(String prefix, Path file) {
+        try (BinaryInventoryReader reader = BinaryInventoryReader.open(file)) {
+            if (!reader.isSorted()) {
+                return -1;
+            }
+            reader.scan((suffix, categoryId, price, status) ->
+                    numberInventory.put(prefix, suffix, categoryIndex.indexOf(categoryId), price, status));
+            return reader.size();
+        }
+    }
+
+    private long load(String prefix, Path file) {
+        long records = 0;
+        try (MappingIterator<SearchResponse> iterator = csvMapper.readerFor(SearchResponse.class)
+                .with(schema)
+                .readValues(file.toFile())) {
+            while (iterator.hasNextValue()) {
+                numberInventory.put(prefix, iterator.nextValue());
+                records++;
+            }
+        }
+        return records;
+    }
+}
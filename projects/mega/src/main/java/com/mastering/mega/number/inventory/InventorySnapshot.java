@@ -0,0 +1,131 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.util.NumberUtil;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Available numbers of one prefix: a 10^6-bit presence bitmap over the six-digit suffix plus one
+ * {@link CategoryIndex} byte per suffix. Stored gzip-compressed, a few hundred KB per prefix.
+ */
+public class InventorySnapshot {
+
+    private static final int MAGIC = 0x4D534E50; // MSNP
+    private static final int VERSION = 1;
+
+    @Getter
+    private final String prefix;
+    private final BitSet present;
+    private final byte[] categories;
+
+    public enum Change {
+        ADDED, REMOVED, CATEGORY_CHANGED
+    }
+
+    @FunctionalInterface
+    public interface ChangeConsumer {
+        void accept(Change change, int suffix, byte previousCategory, byte category) throws IOException;
+    }
+
+    public record Delta(int added, int removed, int categoryChanged) {
+        public int total() {
+            return added + removed + categoryChanged;
+        }
+    }
+
+    public InventorySnapshot(String prefix) {
+        this(prefix, new BitSet(NumberUtil.SUFFIX_SPACE), new byte[NumberUtil.SUFFIX_SPACE]);
+    }
+
+    private InventorySnapshot(String prefix, BitSet present, byte[] categories) {
+        this.prefix = prefix;
+        this.present = present;
+        this.categories = categories;
+    }
+
+    public synchronized void put(int suffix, byte category) {
+        present.set(suffix);
+        categories[suffix] = category;
+    }
+
+    public synchronized boolean contains(int suffix) {
+        return present.get(suffix);
+    }
+
+    public synchronized int count() {
+        return present.cardinality();
+    }
+
+    public synchronized Delta diff(InventorySnapshot previous, ChangeConsumer consumer) throws IOException {
+        BitSet union = (BitSet) present.clone();
+        union.or(previous.present);
+
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        for (int suffix = union.nextSetBit(0); suffix >= 0; suffix = union.nextSetBit(suffix + 1)) {
+            boolean now = present.get(suffix);
+            boolean before = previous.present.get(suffix);
+
+            if (now && !before) {
+                added++;
+                consumer.accept(Change.ADDED, suffix, CategoryIndex.NONE, categories[suffix]);
+            } else if (!now) {
+                removed++;
+                consumer.accept(Change.REMOVED, suffix, previous.categories[suffix], CategoryIndex.NONE);
+            } else if (categories[suffix] != previous.categories[suffix]) {
+                changed++;
+                consumer.accept(Change.CATEGORY_CHANGED, suffix, previous.categories[suffix], categories[suffix]);
+            }
+        }
+        return new Delta(added, removed, changed);
+    }
+
+    public synchronized void write(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(prefix);
+            long[] words = present.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+            out.write(categories);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static InventorySnapshot read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(path)), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an inventory snapshot: " + path);
+            }
+            String prefix = in.readUTF();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            byte[] categories = new byte[NumberUtil.SUFFIX_SPACE];
+            in.readFully(categories);
+            return new InventorySnapshot(prefix, BitSet.valueOf(words), categories);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.util.NumberUtil;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Columnar in-memory store of available numbers keyed by prefix. Every prefix owns dense columns indexed by the
+ * six-digit suffix: a presence bitmap, a {@link CategoryIndex} byte, an unsigned 16-bit NSTS_ID and a 16-bit code into
+ * a shared price dictionary, about 5.1 MB per prefix no matter how many numbers it holds. A value that does not fit is
+ * logged and stored as 0 rather than failing the crawl that feeds the store.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NumberInventory {
+
+    private static final int MAX_STATUS = Character.MAX_VALUE;
+
+    private final CategoryIndex categoryIndex;
+
+    private final Map<String, Columns> prefixes = new ConcurrentHashMap<>();
+    private final PriceDictionary prices = new PriceDictionary();
+    private final AtomicBoolean statusOverflow = new AtomicBoolean();
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(int suffix, byte category, int price, int status);
+    }
+
+    public void put(String prefix, SearchResponse record) {
+        int suffix = NumberUtil.msisdnSuffix(record.getMSISDN());
+        if (suffix < 0) {
+            return;
+        }
+
+        byte category = categoryIndex.indexOf(record.getNCLS_ID());
+        Integer price = NumberUtil.tryParseIntWithSpaces(record.getCATEGORY_PRICE());
+        Integer status = NumberUtil.tryParseIntWithSpaces(record.getNSTS_ID());
+        put(prefix, suffix, category, price != null ? price : categoryIndex.priceOf(category), status != null ? status : 0);
+    }
+
+    public void put(String prefix, int suffix, byte category, int price, int status) {
+        if (status < 0 || status > MAX_STATUS) {
+            if (statusOverflow.compareAndSet(false, true)) {
+                log.warn("NSTS_ID {} of {} outside 0..{}, storing such values as 0", status, prefix, MAX_STATUS);
+            }
+            status = 0;
+        }
+        columns(prefix).put(suffix, category, prices.encode(price), (char) status);
+    }
+
+    public boolean contains(String prefix, int suffix) {
+        Columns columns = prefixes.get(prefix);
+        return columns != null && columns.present.get(suffix);
+    }
+
+    public byte category(String prefix, int suffix) {
+        Columns columns = prefixes.get(prefix);
+        return columns != null ? columns.category[suffix] : CategoryIndex.NONE;
+    }
+
+    public int price(String prefix, int suffix) {
+        Columns columns = prefixes.get(prefix);
+        return columns != null ? prices.decode(columns.price[suffix]) : 0;
+    }
+
+    public int status(String prefix, int suffix) {
+        Columns columns = prefixes.get(prefix);
+        return columns != null ? columns.status[suffix] : 0;
+    }
+
+    public int count(String prefix) {
+        Columns columns = prefixes.get(prefix);
+        return columns != null ? columns.count : 0;
+    }
+
+    public Set<String> prefixes() {
+        return new TreeSet<>(prefixes.keySet());
+    }
+
+    public void scan(String prefix, RecordVisitor visitor) {
+        Columns columns = prefixes.get(prefix);
+        if (columns == null) {
+            return;
+        }
+        int[] decoded = prices.snapshot();
+        BitSet present = columns.present;
+        for (int suffix = present.nextSetBit(0); suffix >= 0; suffix = present.nextSetBit(suffix + 1)) {
+            visitor.visit(suffix, columns.category[suffix], decoded[columns.price[suffix]], columns.status[suffix]);
+        }
+    }
+
+    /**
+     * Visits the stored numbers among {@code suffixes}, cheaper than a full scan for narrow masks.
+     */
+    public void lookup(String prefix, PrimitiveIterator.OfInt suffixes, RecordVisitor visitor) {
+        Columns columns = prefixes.get(prefix);
+        if (columns == null) {
+            return;
+        }
+        int[] decoded = prices.snapshot();
+        while (suffixes.hasNext()) {
+            int suffix = suffixes.nextInt();
+            if (columns.present.get(suffix)) {
+                visitor.visit(suffix, columns.category[suffix], decoded[columns.price[suffix]], columns.status[suffix]);
+            }
+        }
+    }
+
+    public void clear(String prefix) {
+        prefixes.remove(prefix);
+    }
+
+    public long memoryBytes() {
+        return (long) prefixes.size() * Columns.BYTES;
+    }
+
+    private Columns columns(String prefix) {
+        return prefixes.computeIfAbsent(prefix, key -> new Columns());
+    }
+
+    private static final class Columns {
+        static final long BYTES = 5L * NumberUtil.SUFFIX_SPACE + NumberUtil.SUFFIX_SPACE / 8;
+
+        final BitSet present = new BitSet(NumberUtil.SUFFIX_SPACE);
+        final byte[] category = new byte[NumberUtil.SUFFIX_SPACE];
+        final char[] price = new char[NumberUtil.SUFFIX_SPACE];
+        final char[] status = new char[NumberUtil.SUFFIX_SPACE];
+        int count;
+
+        synchronized void put(int suffix, byte category, char price, char status) {
+            if (!present.get(suffix)) {
+                present.set(suffix);
+                count++;
+            }
+            this.category[suffix] = category;
+            this.price[suffix] = price;
+            this.status[suffix] = status;
+        }
+    }
+
+    // prices come from a handful of category tiers; values is copied on write, so a snapshot can be read unlocked
+    private static final class PriceDictionary {
+        private static final int CAPACITY = Character.MAX_VALUE + 1;
+
+        private final Map<Integer, Character> codes = new ConcurrentHashMap<>();
+        private final AtomicBoolean overflow = new AtomicBoolean();
+        private volatile int[] values = new int[1]; // code 0 is a price of 0
+
+        char encode(int price) {
+            Character code = codes.get(price);
+            return code != null ? code : add(price);
+        }
+
+        int decode(char code) {
+            int[] decoded = values;
+            return code < decoded.length ? decoded[code] : 0;
+        }
+
+        int[] snapshot() {
+            return values;
+        }
+
+        private synchronized char add(int price) {
+            Character code = codes.get(price);
+            if (code != null) {
+                return code;
+            }
+            int[] current = values;
+            if (current.length == CAPACITY) {
+                if (overflow.compareAndSet(false, true)) {
+                    log.warn("More than {} distinct prices, storing new ones as 0", CAPACITY - 1);
+                }
+                return 0;
+            }
+            int[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = price;
+            values = next;
+            codes.put(price, (char) current.length);
+            return (char) current.length;
+        }
+    }
+}
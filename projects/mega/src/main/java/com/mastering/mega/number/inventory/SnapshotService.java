@@ -0,0 +1,145 @@
+package com.mastering.mega.number.inventory;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.SearchRequestModel;
+import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.util.NumberUtil;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds an {@link InventorySnapshot} per prefix while crawling and, once the prefix is finished, writes
+ * {@code <prefix>.delta.csv} with the numbers added, removed or moved to another category since the last crawl.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotService {
+
+    private static final String DELTA_HEADER = "CHANGE,MSISDN,PREVIOUS_NCLS_ID,NCLS_ID";
+
+    private final MegaProperties megaProperties;
+    private final CategoryIndex categoryIndex;
+
+    private final Map<String, InventorySnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> incomplete = ConcurrentHashMap.newKeySet();
+
+    public boolean isEnabled() {
+        return megaProperties.getDiff().isEnabled();
+    }
+
+    public void record(String prefix, List<SearchResponse> records) {
+        if (!isEnabled()) {
+            return;
+        }
+        InventorySnapshot snapshot = snapshot(prefix);
+        synchronized (snapshot) {
+            records.forEach(record -> put(snapshot, record));
+        }
+    }
+
+    public void record(String prefix, SearchResponse record) {
+        if (isEnabled()) {
+            put(snapshot(prefix), record);
+        }
+    }
+
+    /**
+     * Pages crawled before a restart are not in memory, so a resumed prefix cannot be diffed.
+     */
+    public void markIncomplete(String prefix) {
+        if (isEnabled() && incomplete.add(prefix)) {
+            log.warn("Prefix {} resumed mid-crawl, its snapshot and delta will not be updated", prefix);
+        }
+    }
+
+    public void discard(String prefix) {
+        snapshots.remove(prefix);
+        incomplete.remove(prefix);
+    }
+
+    /**
+     * Writes the delta and the new snapshot; returns the delta, or null when the prefix was not diffed. A prefix that
+     * returned no records at all is diffed as empty, every number of its previous snapshot was removed.
+     */
+    public InventorySnapshot.Delta complete(String prefix) {
+        InventorySnapshot current = snapshots.remove(prefix);
+        boolean resumed = incomplete.remove(prefix);
+        if (!isEnabled() || resumed) {
+            return null;
+        }
+        if (current == null) {
+            current = new InventorySnapshot(prefix);
+        }
+
+        Path snapshotPath = snapshotPath(prefix);
+        try {
+            InventorySnapshot previous = Files.exists(snapshotPath)
+                    ? InventorySnapshot.read(snapshotPath)
+                    : new InventorySnapshot(prefix);
+            InventorySnapshot.Delta delta = writeDelta(current, previous);
+            current.write(snapshotPath);
+            log.info("Prefix {}: {} numbers, +{} -{} ~{} since last crawl",
+                    prefix, current.count(), delta.added(), delta.removed(), delta.categoryChanged());
+            return delta;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot diff snapshot of " + prefix, e);
+        }
+    }
+
+    private InventorySnapshot.Delta writeDelta(InventorySnapshot current, InventorySnapshot previous) throws IOException {
+        String msisdnPrefix = SearchRequestModel.CODE + current.getPrefix();
+        Path path = Path.of(megaProperties.getOutput().getDirectory(), current.getPrefix() + ".delta.csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(DELTA_HEADER);
+            writer.newLine();
+            return current.diff(previous, (change, suffix, previousCategory, category) -> {
+                writer.write(change.name());
+                writer.write(',');
+                writer.write(msisdnPrefix);
+                writer.write(String.format("%06d", suffix));
+                writer.write(',');
+                writeCategory(writer, previousCategory);
+                writer.write(',');
+                writeCategory(writer, category);
+                writer.newLine();
+            });
+        }
+    }
+
+    private void writeCategory(BufferedWriter writer, byte index) throws IOException {
+        if (index != CategoryIndex.NONE) {
+            writer.write(Integer.toString(categoryIndex.idOf(index)));
+        }
+    }
+
+    private void put(InventorySnapshot snapshot, SearchResponse record) {
+        int suffix = NumberUtil.msisdnSuffix(record.getMSISDN());
+        if (suffix >= 0) {
+            snapshot.put(suffix, categoryIndex.indexOf(record.getNCLS_ID()));
+        }
+    }
+
+    private InventorySnapshot snapshot(String prefix) {
+        return snapshots.computeIfAbsent(prefix, InventorySnapshot::new);
+    }
+
+    private Path snapshotPath(String prefix) {
+        return Path.of(megaProperties.getOutput().getDirectory(), megaProperties.getDiff().getDirectory(), prefix + ".snapshot");
+    }
+}
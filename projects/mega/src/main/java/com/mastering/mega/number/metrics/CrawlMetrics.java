@@ -0,0 +1,297 @@
+package com.mastering.mega.number.metrics;
+
+import com.mastering.mega.config.MegaProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Crawl counters and latency histograms, published as an MXBean and logged as one summary line per interval while
+ * requests are flowing. Recording is lock-free and safe from any thread.
+ */
+@Slf4j
+public class CrawlMetrics implements CrawlMetricsMXBean, AutoCloseable {
+
+    public static final String OBJECT_NAME = "com.mastering.mega:type=CrawlMetrics";
+
+    private final MegaProperties.Metrics config;
+    private final DoubleSupplier requestRate;
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder sessionRefreshes = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final Map<String, PrefixCounters> prefixes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService reporter;
+    private ObjectName registered;
+    private Totals last;
+
+    public CrawlMetrics(MegaProperties.Metrics config, DoubleSupplier requestRate) {
+        this.config = config;
+        this.requestRate = requestRate;
+    }
+
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.isJmx()) {
+            register();
+        }
+        long interval = config.getSummaryIntervalMs();
+        if (interval > 0) {
+            last = totals();
+            reporter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("crawl-metrics").daemon().factory());
+            reporter.scheduleAtFixedRate(this::logSummary, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException e) {
+                log.debug("Cannot unregister {}: {}", registered, e.getMessage());
+            }
+            registered = null;
+        }
+    }
+
+    public void onResponse(int status, long latencyNanos) {
+        requests.increment();
+        requestLatency.record(latencyNanos);
+        if (status == 429 || status >= 500) {
+            throttled.increment();
+        } else if (status >= 400) {
+            errors.increment();
+        }
+    }
+
+    public void onRetry() {
+        retries.increment();
+    }
+
+    public void onHedge() {
+        hedges.increment();
+    }
+
+    public void onPage(String prefix, long pageRecords) {
+        pages.increment();
+        records.add(pageRecords);
+        PrefixCounters counters = prefixes.computeIfAbsent(prefix, key -> new PrefixCounters());
+        counters.pages.increment();
+        counters.records.add(pageRecords);
+    }
+
+    public void onDuplicates(long count) {
+        duplicates.add(count);
+    }
+
+    public void onSessionRefresh() {
+        sessionRefreshes.increment();
+    }
+
+    public void onBytes(long count) {
+        bytes.add(count);
+    }
+
+    public void onFlush(long nanos) {
+        flushLatency.record(nanos);
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+    @Override
+    public long getRecords() {
+        return records.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getSessionRefreshes() {
+        return sessionRefreshes.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return pages.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return records.sum() / elapsedSeconds();
+    }
+
+    @Override
+    public double getRequestLatencyP50Millis() {
+        return requestLatency.percentileMillis(0.50);
+    }
+
+    @Override
+    public double getRequestLatencyP99Millis() {
+        return requestLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public double getFlushLatencyP99Millis() {
+        return flushLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public double getRequestRate() {
+        return requestRate.getAsDouble();
+    }
+
+    @Override
+    public Map<String, Long> getPagesByPrefix() {
+        return byPrefix(counters -> counters.pages.sum());
+    }
+
+    @Override
+    public Map<String, Long> getRecordsByPrefix() {
+        return byPrefix(counters -> counters.records.sum());
+    }
+
+    private Map<String, Long> byPrefix(ToLongFunction<PrefixCounters> value) {
+        Map<String, Long> result = new TreeMap<>();
+        prefixes.forEach((prefix, counters) -> result.put(prefix, value.applyAsLong(counters)));
+        return result;
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                log.warn("{} already registered, JMX shows the other instance", OBJECT_NAME);
+                return;
+            }
+            server.registerMBean(this, name);
+            registered = name;
+        } catch (JMException e) {
+            log.warn("Cannot register {}: {}", OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    private void logSummary() {
+        try {
+            Totals now = totals();
+            Totals previous = last;
+            last = now;
+            long requestsDelta = now.requests - previous.requests;
+            if (requestsDelta == 0) {
+                return;
+            }
+            double seconds = (now.nanos - previous.nanos) / 1e9;
+            long[] latency = LatencyHistogram.minus(now.latency, previous.latency);
+            long[] flush = LatencyHistogram.minus(now.flush, previous.flush);
+
+            log.info(String.format(Locale.ROOT,
+                    "%.1f pages/s, %.0f records/s, %.1f req/s (limit %.2f), latency p50 %.0f ms p99 %.0f ms, "
+                            + "%d retries, %d hedges, %d throttled, %d session refreshes, %d duplicates, %.0f KB/s, flush p99 %.1f ms "
+                            + "| %d pages, %d records",
+                    (now.pages - previous.pages) / seconds,
+                    (now.records - previous.records) / seconds,
+                    requestsDelta / seconds,
+                    requestRate.getAsDouble(),
+                    LatencyHistogram.percentileMillis(latency, 0.50),
+                    LatencyHistogram.percentileMillis(latency, 0.99),
+                    now.retries - previous.retries,
+                    now.hedges - previous.hedges,
+                    now.throttled - previous.throttled,
+                    now.sessionRefreshes - previous.sessionRefreshes,
+                    now.duplicates - previous.duplicates,
+                    (now.bytes - previous.bytes) / 1024.0 / seconds,
+                    LatencyHistogram.percentileMillis(flush, 0.99),
+                    now.pages,
+                    now.records));
+        } catch (RuntimeException e) {
+            log.error("Metrics summary failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private Totals totals() {
+        return new Totals(System.nanoTime(), requests.sum(), pages.sum(), records.sum(), retries.sum(), hedges.sum(),
+                throttled.sum(), sessionRefreshes.sum(), duplicates.sum(), bytes.sum(), requestLatency.snapshot(),
+                flushLatency.snapshot());
+    }
+
+    private static class PrefixCounters {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder records = new LongAdder();
+    }
+
+    private record Totals(long nanos, long requests, long pages, long records, long retries, long hedges, long throttled,
+                          long sessionRefreshes, long duplicates, long bytes, long[] latency, long[] flush) {
+    }
+}
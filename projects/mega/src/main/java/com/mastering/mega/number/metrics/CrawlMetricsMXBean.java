@@ -0,0 +1,45 @@
+package com.mastering.mega.number.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CrawlMetrics}, registered as {@value CrawlMetrics#OBJECT_NAME}.
+ */
+public interface CrawlMetricsMXBean {
+
+    long getRequests();
+
+    long getPages();
+
+    long getRecords();
+
+    long getRetries();
+
+    long getHedges();
+
+    long getThrottled();
+
+    long getErrors();
+
+    long getDuplicates();
+
+    long getSessionRefreshes();
+
+    long getBytesReceived();
+
+    double getPagesPerSecond();
+
+    double getRecordsPerSecond();
+
+    double getRequestLatencyP50Millis();
+
+    double getRequestLatencyP99Millis();
+
+    double getFlushLatencyP99Millis();
+
+    double getRequestRate();
+
+    Map<String, Long> getPagesByPrefix();
+
+    Map<String, Long> getRecordsByPrefix();
+}
@@ -0,0 +1,99 @@
+package com.mastering.mega.number.metrics;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts response body bytes as they are read, after transport decompression. A request that carries an
+ * {@link AtomicLong} as the {@link #COUNTER} attribute also gets its own body size added there.
+ */
+@RequiredArgsConstructor
+public class ResponseBytesInterceptor implements ClientHttpRequestInterceptor {
+
+    public static final String COUNTER = ResponseBytesInterceptor.class.getName() + ".counter";
+
+    private final CrawlMetrics metrics;
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        ClientHttpResponse response = execution.execute(request, body);
+        AtomicLong counter = request.getAttributes().get(COUNTER) instanceof AtomicLong attached ? attached : null;
+        return new ClientHttpResponse() {
+            private InputStream counting;
+
+            @Override
+            public HttpStatusCode getStatusCode() throws IOException {
+                return response.getStatusCode();
+            }
+
+            @Override
+            public String getStatusText() throws IOException {
+                return response.getStatusText();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return response.getHeaders();
+            }
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (counting == null) {
+                    counting = new CountingInputStream(response.getBody(), counter);
+                }
+                return counting;
+            }
+
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(long bytes) {
+            metrics.onBytes(bytes);
+            if (counter != null) {
+                counter.addAndGet(bytes);
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ public class SearchRequestModel {
     @Builder.Default
     private int page = 1;
 
+    private int skip; // leading records of the current page already taken under a previous limit
+
     @Builder.Default
     private String prefix = "___";
 
@@ -42,7 +44,28 @@ public class SearchRequestModel {
         return allCategories;
     }
 
+    public String getMask() {
+        return CODE + prefix + number;
+    }
+
     public void incrementPage() {
         page++;
     }
+
+    /**
+     * Moves past the current page and continues with {@code nextLimit} records per page.
+     */
+    public void nextPage(int nextLimit) {
+        moveTo((long) page * limit, nextLimit);
+    }
+
+    /**
+     * Points at the page holding record {@code offset} for the given limit; records of that page before the offset
+     * are counted in {@link #getSkip()}.
+     */
+    public void moveTo(long offset, int newLimit) {
+        limit = newLimit;
+        page = (int) (offset / newLimit) + 1;
+        skip = (int) (offset % newLimit);
+    }
 }
@@ -26,7 +26,7 @@ public class SearchRequest {
                 .categories(model.getAllCategories())
                 .limit(model.getLimit())
                 .page(model.getPage())
-                .mask(SearchRequestModel.CODE + model.getPrefix() + model.getNumber())
+                .mask(model.getMask())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.mastering.mega.number.query;
+
+import com.mastering.mega.number.model.SearchRequestModel;
+import com.mastering.mega.util.NumberUtil;
+
+import java.util.Locale;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * Compiled form of the site's number mask ({@code 996___X1111X}): {@code X} or {@code _} matches any digit.
+ * Accepts the full twelve positions, prefix and suffix (nine) or the suffix alone (six). The suffix part is
+ * reduced to the sum of its fixed digits plus the decimal weights of its free positions, so matching is
+ * arithmetic and candidates can be enumerated directly.
+ */
+public final class MaskMatcher {
+
+    private final char[] prefix;
+    private final int fixedValue;
+    private final int[] fixedWeights;
+    private final int[] fixedDigits;
+    private final int[] freeWeights;
+
+    private MaskMatcher(char[] prefix, int fixedValue, int[] fixedWeights, int[] fixedDigits, int[] freeWeights) {
+        this.prefix = prefix;
+        this.fixedValue = fixedValue;
+        this.fixedWeights = fixedWeights;
+        this.fixedDigits = fixedDigits;
+        this.freeWeights = freeWeights;
+    }
+
+    public static MaskMatcher compile(String mask) {
+        String normalized = mask.trim().toUpperCase(Locale.ROOT).replace('_', 'X');
+        if (normalized.length() == 12 && normalized.startsWith(SearchRequestModel.CODE)) {
+            normalized = normalized.substring(SearchRequestModel.CODE.length());
+        }
+        if (normalized.length() == NumberUtil.SUFFIX_DIGITS) {
+            normalized = "XXX" + normalized;
+        }
+        if (normalized.length() != 9 || !normalized.matches("[0-9X]+")) {
+            throw new IllegalArgumentException("Invalid mask: " + mask);
+        }
+
+        String suffix = normalized.substring(3);
+        int fixedValue = 0;
+        int fixedCount = (int) suffix.chars().filter(Character::isDigit).count();
+        int[] fixedWeights = new int[fixedCount];
+        int[] fixedDigits = new int[fixedCount];
+        int[] freeWeights = new int[suffix.length() - fixedCount];
+
+        int weight = 1;
+        for (int i = suffix.length() - 1, fixed = 0, free = 0; i >= 0; i--, weight *= 10) {
+            char ch = suffix.charAt(i);
+            if (ch == 'X') {
+                freeWeights[free++] = weight;
+            } else {
+                fixedWeights[fixed] = weight;
+                fixedDigits[fixed++] = ch - '0';
+                fixedValue += (ch - '0') * weight;
+            }
+        }
+        return new MaskMatcher(normalized.substring(0, 3).toCharArray(), fixedValue, fixedWeights, fixedDigits, freeWeights);
+    }
+
+    public boolean matchesPrefix(String candidate) {
+        if (candidate.length() != prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (prefix[i] != 'X' && prefix[i] != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean matches(int suffix) {
+        for (int i = 0; i < fixedWeights.length; i++) {
+            if (suffix / fixedWeights[i] % 10 != fixedDigits[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int candidateCount() {
+        int count = 1;
+        for (int i = 0; i < freeWeights.length; i++) {
+            count *= 10;
+        }
+        return count;
+    }
+
+    public PrimitiveIterator.OfInt candidates() {
+        return IntStream.range(0, candidateCount()).map(this::spread).iterator();
+    }
+
+    // places the decimal digits of n onto the free positions
+    private int spread(int n) {
+        int suffix = fixedValue;
+        for (int weight : freeWeights) {
+            suffix += n % 10 * weight;
+            n /= 10;
+        }
+        return suffix;
+    }
+}
@@ -0,0 +1,4 @@
+package com.mastering.mega.number.query;
+
+public record NumberMatch(String msisdn, int categoryId, int price, int status) {
+}
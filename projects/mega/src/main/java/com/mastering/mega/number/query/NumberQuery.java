@@ -0,0 +1,28 @@
+package com.mastering.mega.number.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NumberQuery {
+    @Builder.Default
+    private String mask = "996___XXXXXX";
+
+    @Builder.Default
+    private Set<Integer> categories = Set.of(); // NCLS_ID, empty means any
+
+    private Integer minPrice;
+    private Integer maxPrice;
+
+    @Builder.Default
+    private int limit = 100;
+}
@@ -0,0 +1,66 @@
+package com.mastering.mega.number.query;
+
+import com.mastering.mega.number.inventory.CategoryIndex;
+import com.mastering.mega.number.inventory.NumberInventory;
+import com.mastering.mega.number.model.SearchRequestModel;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class NumberQueryService {
+
+    private final NumberInventory numberInventory;
+    private final CategoryIndex categoryIndex;
+
+    public List<NumberMatch> query(NumberQuery query) {
+        MaskMatcher matcher = MaskMatcher.compile(query.getMask());
+        boolean[] categories = categoryFilter(query);
+        int minPrice = query.getMinPrice() != null ? query.getMinPrice() : Integer.MIN_VALUE;
+        int maxPrice = query.getMaxPrice() != null ? query.getMaxPrice() : Integer.MAX_VALUE;
+
+        List<NumberMatch> matches = new ArrayList<>();
+        for (String prefix : numberInventory.prefixes()) {
+            if (matches.size() >= query.getLimit() || !matcher.matchesPrefix(prefix)) {
+                continue;
+            }
+
+            String msisdnPrefix = SearchRequestModel.CODE + prefix;
+            NumberInventory.RecordVisitor collector = (suffix, category, price, status) -> {
+                if (matches.size() < query.getLimit()
+                        && (categories == null || categories[category])
+                        && price >= minPrice && price <= maxPrice) {
+                    matches.add(new NumberMatch(msisdnPrefix + String.format("%06d", suffix),
+                            categoryIndex.idOf(category), price, status));
+                }
+            };
+
+            // enumerate the mask when it is narrower than what the prefix holds, otherwise scan the prefix
+            if (matcher.candidateCount() <= numberInventory.count(prefix)) {
+                numberInventory.lookup(prefix, matcher.candidates(), collector);
+            } else {
+                numberInventory.scan(prefix, (suffix, category, price, status) -> {
+                    if (matcher.matches(suffix)) {
+                        collector.visit(suffix, category, price, status);
+                    }
+                });
+            }
+        }
+        return matches;
+    }
+
+    private boolean[] categoryFilter(NumberQuery query) {
+        if (query.getCategories() == null || query.getCategories().isEmpty()) {
+            return null;
+        }
+        boolean[] allowed = new boolean[categoryIndex.size() + 1];
+        query.getCategories().forEach(id -> allowed[categoryIndex.indexOf(id)] = true);
+        allowed[CategoryIndex.NONE] = false;
+        return allowed;
+    }
+}
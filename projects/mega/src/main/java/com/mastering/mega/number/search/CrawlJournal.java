@@ -0,0 +1,183 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only log of committed pages. Each line is {@code slice page records limit file=offset...}, written after the
+ * page's output has been flushed and forced to disk; a page with zero records marks the slice as finished. The limit
+ * the page was fetched with is what maps it back to a record offset, it reads as 0 in journals written before it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CrawlJournal {
+
+    private final MegaProperties megaProperties;
+
+    private final Map<String, Entry> slices = new ConcurrentHashMap<>();
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private FileChannel channel;
+
+    public record Entry(String slice, int page, int limit, long records, Map<String, Long> offsets) {
+        public boolean done() {
+            return records == 0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Path path = path();
+        try {
+            long validLength = Files.exists(path) ? load(path) : 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // a crash can leave a torn last line behind, new entries start after the last complete one
+            channel.truncate(validLength);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open crawl journal " + path, e);
+        }
+
+        if (!slices.isEmpty()) {
+            log.info("Resuming crawl from {} ({} slices journaled)", path, slices.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return megaProperties.getJournal().isEnabled();
+    }
+
+    public Entry last(String slice) {
+        return slices.get(slice);
+    }
+
+    public boolean hasEntries(String maskPrefix) {
+        return slices.keySet().stream().anyMatch(slice -> slice.startsWith(maskPrefix));
+    }
+
+    public Long committedOffset(Path file) {
+        return offsets.get(file.toString());
+    }
+
+    public synchronized void append(Entry entry) {
+        StringBuilder line = new StringBuilder()
+                .append(entry.slice()).append('\t')
+                .append(entry.page()).append('\t')
+                .append(entry.records()).append('\t')
+                .append(entry.limit());
+        entry.offsets().forEach((file, offset) -> line.append('\t').append(file).append('=').append(offset));
+        line.append('\n');
+
+        try {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(line.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to crawl journal", e);
+        }
+
+        slices.put(entry.slice(), entry);
+        offsets.putAll(entry.offsets());
+    }
+
+    /**
+     * Drops the journal after a fully successful crawl so that the next run starts from scratch.
+     */
+    public synchronized void complete() {
+        if (!isEnabled()) {
+            return;
+        }
+        close();
+        try {
+            Files.deleteIfExists(path());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        slices.clear();
+        offsets.clear();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close crawl journal: {}", e.getMessage());
+        }
+        channel = null;
+    }
+
+    private Path path() {
+        return Path.of(megaProperties.getOutput().getDirectory(), megaProperties.getJournal().getFile());
+    }
+
+    private long load(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+
+        for (String line : new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n")) {
+            Entry entry = line.isEmpty() ? null : parse(line);
+            if (entry != null) {
+                slices.put(entry.slice(), entry);
+                offsets.putAll(entry.offsets());
+            }
+        }
+        return length;
+    }
+
+    private static Entry parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length < 3) {
+            return null;
+        }
+
+        try {
+            int first = 3;
+            int limit = 0;
+            if (fields.length > 3 && fields[3].indexOf('=') < 0) {
+                limit = Integer.parseInt(fields[3]);
+                first = 4;
+            }
+            Map<String, Long> fileOffsets = new LinkedHashMap<>();
+            for (int i = first; i < fields.length; i++) {
+                int eq = fields[i].lastIndexOf('=');
+                fileOffsets.put(fields[i].substring(0, eq), Long.parseLong(fields[i].substring(eq + 1)));
+            }
+            return new Entry(fields[0], Integer.parseInt(fields[1]), limit, Long.parseLong(fields[2]), fileOffsets);
+        } catch (RuntimeException e) {
+            log.warn("Skipping corrupt journal line: {}", line);
+            return null;
+        }
+    }
+}
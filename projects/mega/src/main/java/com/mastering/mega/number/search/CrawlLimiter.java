@@ -0,0 +1,58 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+@Component
+public class CrawlLimiter {
+
+    private final Semaphore global;
+    private final int maxPerHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    public CrawlLimiter(MegaProperties megaProperties) {
+        MegaProperties.Concurrency concurrency = megaProperties.getConcurrency();
+        this.global = new Semaphore(Math.max(1, concurrency.getMaxConcurrency()), true);
+        this.maxPerHost = Math.max(1, concurrency.getMaxPerHost());
+    }
+
+    public void runGlobal(Runnable task) {
+        acquire(global);
+        try {
+            task.run();
+        } finally {
+            global.release();
+        }
+    }
+
+    public <T> T callHost(String uri, Supplier<T> call) {
+        Semaphore permits = hosts.computeIfAbsent(hostOf(uri), host -> new Semaphore(maxPerHost, true));
+        acquire(permits);
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a crawl permit", e);
+        }
+    }
+
+    private static String hostOf(String uri) {
+        String host = URI.create(uri).getHost();
+        return host != null ? host : uri;
+    }
+}
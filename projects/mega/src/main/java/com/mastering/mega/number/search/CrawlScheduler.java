@@ -0,0 +1,269 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.config.PrefixProperties;
+import com.mastering.mega.number.inventory.CategoryAggregator;
+import com.mastering.mega.number.inventory.InventorySnapshot;
+import com.mastering.mega.number.inventory.SnapshotService;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Long-running crawl that revisits each prefix on its own interval. Every crawl is diffed against the previous
+ * snapshot, and the number of changed numbers per hour is smoothed into a change rate per prefix. Intervals follow
+ * the square-root rule: {@code interval = sqrt(cost / rate) * sum(sqrt(rate * cost)) / budget}, which keeps the
+ * expected number of stale records lowest for a given request budget per hour. Among due prefixes the one with the
+ * most expected changes per request goes first, and a crawl waits while the requests sent in the last hour plus its
+ * expected cost would exceed the budget.
+ * <p>
+ * A prefix is the unit because shards of a prefix share its output files and snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CrawlScheduler {
+
+    private static final double HOUR_MS = 3_600_000.0;
+    private static final double MIN_RATE = 0.01; // changes per hour assumed for a prefix that did not move
+
+    private final SearchServiceImpl searchService;
+    private final SnapshotService snapshotService;
+    private final CrawlJournal crawlJournal;
+    private final CategoryAggregator categoryAggregator;
+    private final CrawlMetrics crawlMetrics;
+
+    private final MegaProperties megaProperties;
+    private final PrefixProperties prefixProperties;
+
+    private final Deque<long[]> spent = new ArrayDeque<>(); // {time, requests} of crawls in the last hour
+
+    /**
+     * Runs until the thread is interrupted.
+     */
+    public void run() {
+        if (crawlJournal.isEnabled()) {
+            throw new IllegalStateException("mega.journal resumes a single pass, schedule mode keeps its own state in "
+                    + megaProperties.getSchedule().getStateFile());
+        }
+        if (!snapshotService.isEnabled()) {
+            throw new IllegalStateException("Schedule mode estimates change from snapshot deltas, enable mega.diff");
+        }
+
+        Map<String, Slice> slices = load();
+        plan(slices);
+        searchService.init();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.currentTimeMillis();
+            Slice next = slices.values().stream()
+                    .filter(slice -> slice.dueAt() <= now)
+                    .max(Comparator.comparingDouble(slice -> slice.priority(now)))
+                    .orElseGet(() -> slices.values().stream().min(Comparator.comparingLong(Slice::dueAt)).orElseThrow());
+
+            long wait = Math.max(next.dueAt() - now, budgetWait(expectedCost(next, slices), now));
+            if (wait > 0) {
+                log.info("Next crawl {} in {} s", next.prefix, wait / 1000);
+                if (!sleep(wait)) {
+                    return;
+                }
+                continue;
+            }
+            crawl(next, slices);
+        }
+    }
+
+    private void crawl(Slice slice, Map<String, Slice> slices) {
+        long start = System.currentTimeMillis();
+        long requestsBefore = crawlMetrics.getRequests();
+        InventorySnapshot.Delta delta;
+        try {
+            delta = searchService.recrawl(slice.prefix);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                log.info("Scheduled crawl of {} interrupted", slice.prefix);
+                return;
+            }
+            log.error("Scheduled crawl of {} failed: {}", slice.prefix, e.getMessage(), e);
+            slice.retryAt(start + megaProperties.getSchedule().getMinIntervalMs());
+            return;
+        } finally {
+            spent.addLast(new long[]{start, crawlMetrics.getRequests() - requestsBefore});
+        }
+
+        long previousCrawl = slice.lastCrawl;
+        slice.observe(start, delta, spent.getLast()[1], megaProperties.getSchedule().getSmoothing());
+        plan(slices);
+        save(slices);
+        categoryAggregator.writeReport();
+
+        log.info(String.format(Locale.ROOT, "Prefix %s: %s changes%s, %d requests, %s changes/h, next in %.1f min",
+                slice.prefix, delta != null ? delta.total() : "?",
+                previousCrawl > 0 ? String.format(Locale.ROOT, " in %.1f min", (start - previousCrawl) / 60_000.0) : "",
+                slice.cost, slice.rate < 0 ? "?" : String.format(Locale.ROOT, "%.2f", slice.rate),
+                slice.interval / 60_000.0));
+    }
+
+    // square-root rule over all prefixes, a prefix without a measured rate is revisited at the minimum interval
+    private void plan(Map<String, Slice> slices) {
+        MegaProperties.Schedule config = megaProperties.getSchedule();
+        double sum = 0;
+        for (Slice slice : slices.values()) {
+            sum += Math.sqrt(slice.estimatedRate() * expectedCost(slice, slices));
+        }
+        double budget = Math.max(1, config.getRequestsPerHour());
+        for (Slice slice : slices.values()) {
+            double hours = Math.sqrt(expectedCost(slice, slices) / slice.estimatedRate()) * sum / budget;
+            slice.interval = slice.rate < 0
+                    ? config.getMinIntervalMs()
+                    : Math.clamp(Math.round(hours * HOUR_MS), config.getMinIntervalMs(), config.getMaxIntervalMs());
+        }
+    }
+
+    // a prefix not crawled yet is expected to cost as much as the most expensive one seen
+    private static long expectedCost(Slice slice, Map<String, Slice> slices) {
+        if (slice.cost > 0) {
+            return slice.cost;
+        }
+        return Math.max(1, slices.values().stream().mapToLong(other -> other.cost).max().orElse(1));
+    }
+
+    // how long until the last hour's requests leave room for the next crawl
+    private long budgetWait(long cost, long now) {
+        while (!spent.isEmpty() && spent.getFirst()[0] <= now - HOUR_MS) {
+            spent.removeFirst();
+        }
+        long budget = megaProperties.getSchedule().getRequestsPerHour();
+        long used = spent.stream().mapToLong(entry -> entry[1]).sum();
+        if (used + cost <= budget) {
+            return 0;
+        }
+        for (long[] entry : spent) {
+            used -= entry[1];
+            // a crawl costing more than the whole budget still runs, alone in its hour
+            if (used + cost <= budget || used == 0) {
+                return Math.max(0, entry[0] + (long) HOUR_MS - now);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Map<String, Slice> load() {
+        Map<String, Slice> slices = new LinkedHashMap<>();
+        for (String prefix : prefixProperties.getSet()) {
+            slices.put(prefix, new Slice(prefix));
+        }
+
+        Path path = statePath();
+        if (!Files.exists(path)) {
+            return slices;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                Slice slice = fields.length == 4 ? slices.get(fields[0]) : null;
+                if (slice != null) {
+                    slice.lastCrawl = Long.parseLong(fields[1]);
+                    slice.rate = Double.parseDouble(fields[2]);
+                    slice.cost = Long.parseLong(fields[3]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable schedule state {}: {}", path, e.getMessage());
+        }
+        return slices;
+    }
+
+    private void save(Map<String, Slice> slices) {
+        Path path = statePath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Slice slice : slices.values()) {
+                    writer.write(slice.prefix + "\t" + slice.lastCrawl + "\t" + slice.rate + "\t" + slice.cost);
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save schedule state " + path, e);
+        }
+    }
+
+    private Path statePath() {
+        return Path.of(megaProperties.getOutput().getDirectory(), megaProperties.getSchedule().getStateFile());
+    }
+
+    private static class Slice {
+        private final String prefix;
+        private long lastCrawl; // epoch ms of the last crawl start, 0 before the first one
+        private double rate = -1; // smoothed changed numbers per hour, negative until measured
+        private long cost; // requests of the last crawl, 0 before the first one
+        private long interval;
+        private long retryAt;
+
+        Slice(String prefix) {
+            this.prefix = prefix;
+        }
+
+        long dueAt() {
+            return Math.max(lastCrawl == 0 ? 0 : lastCrawl + interval, retryAt);
+        }
+
+        double estimatedRate() {
+            return Math.max(rate, MIN_RATE);
+        }
+
+        // expected changes picked up per request, a prefix never crawled comes first
+        double priority(long now) {
+            if (lastCrawl == 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return estimatedRate() * (now - lastCrawl) / HOUR_MS / Math.max(1, cost);
+        }
+
+        void retryAt(long time) {
+            retryAt = time;
+        }
+
+        // the first diff is against a snapshot of unknown age, so a rate needs two crawls in this schedule
+        void observe(long start, InventorySnapshot.Delta delta, long requests, double smoothing) {
+            if (delta != null && lastCrawl > 0 && start > lastCrawl) {
+                double observed = delta.total() / ((start - lastCrawl) / HOUR_MS);
+                rate = rate < 0 ? observed : smoothing * observed + (1 - smoothing) * rate;
+            }
+            lastCrawl = start;
+            retryAt = 0;
+            if (requests > 0) {
+                cost = requests;
+            }
+        }
+    }
+}
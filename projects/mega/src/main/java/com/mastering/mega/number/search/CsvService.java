@@ -3,7 +3,18 @@ package com.mastering.mega.number.search;
 import com.mastering.mega.number.model.response.SearchResponse;
 
 import java.util.List;
+import java.util.Map;
 
 public interface CsvService {
     void write(String prefix, List<SearchResponse> list);
+
+    void flush(String prefix);
+
+    Map<String, Long> commit(String prefix);
+
+    void stage(String prefix);
+
+    void publish(String prefix);
+
+    void close(String prefix);
 }
@@ -1,5 +1,7 @@
 package com.mastering.mega.number.search;
 
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.metrics.CrawlMetrics;
 import com.mastering.mega.number.model.response.SearchResponse;
 import tools.jackson.databind.SequenceWriter;
 import tools.jackson.dataformat.csv.CsvMapper;
@@ -9,12 +11,34 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class CsvServiceImpl implements CsvService {
     @Qualifier("csvMapper")
     private final CsvMapper csvMapper;
@@ -22,11 +46,187 @@ public class CsvServiceImpl implements CsvService {
     @Qualifier("searchResponseCsvSchema")
     private final CsvSchema schema;
 
+    private final MegaProperties megaProperties;
+    private final CrawlJournal crawlJournal;
+    private final CrawlMetrics crawlMetrics;
+
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final Set<String> staged = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        long interval = megaProperties.getOutput().getFlushIntervalMs();
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("csv-flusher").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
     public void write(String prefix, List<SearchResponse> list) {
-        File file = new File(prefix + ".csv");
+        for (SearchResponse record : list) {
+            partition(prefix, record).write(record);
+        }
+    }
+
+    public void flush(String prefix) {
+        partitions.values().stream()
+                .filter(partition -> partition.prefix.equals(prefix))
+                .forEach(Partition::flush);
+    }
+
+    /**
+     * Flushes and forces every partition of the prefix, returning the durable length of each file.
+     */
+    public Map<String, Long> commit(String prefix) {
+        Map<String, Long> offsets = new TreeMap<>();
+        partitions.values().stream()
+                .filter(partition -> partition.prefix.equals(prefix))
+                .forEach(partition -> offsets.put(partition.path.toString(), partition.commit()));
+        return offsets;
+    }
+
+    /**
+     * Writes the prefix to {@code <partition>.csv.tmp} files from here on, leaving its current output in place until
+     * {@link #publish}.
+     */
+    public void stage(String prefix) {
+        staged.add(prefix);
+    }
+
+    /**
+     * Closes the files of a staged prefix and moves each over the partition it replaces.
+     */
+    public void publish(String prefix) {
+        for (Partition partition : remove(prefix)) {
+            partition.close();
+            if (!partition.path.equals(partition.target)) {
+                try {
+                    Files.move(partition.path, partition.target, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot replace " + partition.target, e);
+                }
+            }
+        }
+        staged.remove(prefix);
+    }
+
+    /**
+     * Closes the files of the prefix; writing to it again starts them over. Files staged and not published are
+     * deleted.
+     */
+    public void close(String prefix) {
+        for (Partition partition : remove(prefix)) {
+            partition.close();
+            if (!partition.path.equals(partition.target)) {
+                try {
+                    Files.deleteIfExists(partition.path);
+                } catch (IOException e) {
+                    log.warn("Cannot delete {}: {}", partition.path, e.getMessage());
+                }
+            }
+        }
+        staged.remove(prefix);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        partitions.values().forEach(Partition::close);
+        partitions.clear();
+    }
+
+    private void flushAll() {
+        try {
+            partitions.values().forEach(Partition::flush);
+        } catch (RuntimeException e) {
+            log.error("Scheduled CSV flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<Partition> remove(String prefix) {
+        List<Partition> removed = new ArrayList<>();
+        partitions.values().removeIf(partition -> partition.prefix.equals(prefix) && removed.add(partition));
+        return removed;
+    }
+
+    private Partition partition(String prefix, SearchResponse record) {
+        MegaProperties.Output output = megaProperties.getOutput();
+        String name = prefix;
+        if (output.isPartitionByCategory()) {
+            name = prefix + "_" + (record.getNCLS_ID() != null ? record.getNCLS_ID() : "unknown");
+        }
+        return partitions.computeIfAbsent(name, key -> {
+            Path target = Path.of(output.getDirectory(), key + ".csv");
+            return new Partition(prefix, target,
+                    staged.contains(prefix) ? target.resolveSibling(target.getFileName() + ".tmp") : target);
+        });
+    }
+
+    private class Partition {
+        private final String prefix;
+        private final Path target;
+        private final Path path; // target, or the file it is staged in
+        private final FileChannel channel;
+        private final SequenceWriter writer;
+        private final int flushRecords;
+        private int pending;
+
+        Partition(String prefix, Path target, Path path) {
+            this.prefix = prefix;
+            this.target = target;
+            this.path = path;
+            this.flushRecords = megaProperties.getOutput().getFlushRecords();
+            try {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                // every run rewrites its output, a resumed one keeps what the journal saw committed
+                Long committed = crawlJournal.committedOffset(path);
+                channel.truncate(committed != null ? committed : 0);
+                channel.position(channel.size());
+                CsvSchema partitionSchema = channel.size() == 0 ? schema : schema.withoutHeader();
+                BufferedWriter buffered = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8),
+                        megaProperties.getOutput().getBufferSize());
+                writer = csvMapper.writer(partitionSchema).writeValues(buffered);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open " + path, e);
+            }
+        }
+
+        synchronized void write(SearchResponse record) {
+            writer.write(record);
+            if (++pending >= flushRecords) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (pending == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            writer.flush();
+            pending = 0;
+            crawlMetrics.onFlush(System.nanoTime() - start);
+        }
+
+        synchronized long commit() {
+            long start = System.nanoTime();
+            writer.flush();
+            pending = 0;
+            try {
+                channel.force(false);
+                crawlMetrics.onFlush(System.nanoTime() - start);
+                return channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot commit " + path, e);
+            }
+        }
 
-        try (SequenceWriter writer = csvMapper.writer(schema).writeValues(file)) {
-            writer.writeAll(list);
+        synchronized void close() {
+            writer.close();
+            log.info("Closed {}", path);
         }
     }
 }
@@ -0,0 +1,57 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.util.NumberUtil;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops numbers already seen in the prefix, since pages shift while they are crawled. Keeps one bit per possible
+ * suffix (125 KB per prefix), so nothing is boxed and a dense prefix costs well under a byte per number.
+ */
+public class MsisdnDeduplicator {
+
+    private final Map<String, Seen> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * True the first time the number shows up in the prefix; numbers that are not a full MSISDN always pass.
+     */
+    public boolean firstSeen(String prefix, CharSequence msisdn) {
+        return firstSeen(prefix, NumberUtil.msisdnSuffix(msisdn));
+    }
+
+    public boolean firstSeen(String prefix, int suffix) {
+        if (suffix < 0) {
+            return true;
+        }
+        Seen seen = prefixes.computeIfAbsent(prefix, key -> new Seen());
+        synchronized (seen) {
+            if (seen.suffixes.get(suffix)) {
+                seen.dropped++;
+                return false;
+            }
+            seen.suffixes.set(suffix);
+            return true;
+        }
+    }
+
+    public long dropped(String prefix) {
+        Seen seen = prefixes.get(prefix);
+        if (seen == null) {
+            return 0;
+        }
+        synchronized (seen) {
+            return seen.dropped;
+        }
+    }
+
+    public void clear(String prefix) {
+        prefixes.remove(prefix);
+    }
+
+    private static class Seen {
+        private final BitSet suffixes = new BitSet(NumberUtil.SUFFIX_SPACE);
+        private long dropped;
+    }
+}
@@ -0,0 +1,92 @@
+package com.mastering.mega.number.search;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Two-stage fetch/write pipeline: a virtual-thread fetcher prefetches pages into a bounded queue
+ * while the calling thread drains it into the writer. At most {@code queueDepth} pages wait in memory.
+ */
+public class PagePipeline<T> {
+
+    private final int queueDepth;
+
+    public PagePipeline(int queueDepth) {
+        this.queueDepth = Math.max(1, queueDepth);
+    }
+
+    /**
+     * Runs until {@code fetcher} returns {@code null}. A failure in either stage stops both and is rethrown.
+     */
+    public void run(String name, Supplier<T> fetcher, Consumer<T> writer) {
+        BlockingQueue<Slot<T>> queue = new ArrayBlockingQueue<>(queueDepth);
+        AtomicReference<RuntimeException> fetchError = new AtomicReference<>();
+
+        Thread fetchThread = Thread.ofVirtual().name("fetch-" + name).start(() -> {
+            try {
+                T page;
+                while ((page = fetcher.get()) != null) {
+                    queue.put(new Slot<>(page));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                fetchError.set(e);
+            }
+
+            try {
+                queue.put(Slot.end());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        boolean drained = false;
+        try {
+            Slot<T> slot;
+            while ((slot = queue.take()).page() != null) {
+                writer.accept(slot.page());
+            }
+            drained = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Pipeline " + name + " interrupted", e);
+        } finally {
+            if (!drained) {
+                stop(fetchThread, queue);
+            }
+        }
+
+        if (fetchError.get() != null) {
+            throw fetchError.get();
+        }
+    }
+
+    // the fetcher shares the request model with the caller, it must be gone before the caller handles the failure
+    private static void stop(Thread fetchThread, BlockingQueue<?> queue) {
+        fetchThread.interrupt();
+        queue.clear();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                fetchThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Slot<T>(T page) {
+        static <T> Slot<T> end() {
+            return new Slot<>(null);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.request.SearchRequest;
+import tools.jackson.databind.json.JsonMapper;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Search response bodies on disk, gzipped under {@code <directory>/<ab>/<sha-256>.json.gz}. The key is the SHA-256 of
+ * the search route and the request body as it is sent, so a page is found again only for the same mask, page, limit
+ * and categories. The host is not part of the key, a cache directory holds the responses of one site. An entry older
+ * than {@code ttl-ms} is fetched again; in replay mode the age is ignored and a missing entry fails the crawl instead
+ * of going to the network.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseCache {
+
+    private static final JsonMapper MAPPER = JsonMapper.shared();
+
+    private final MegaProperties megaProperties;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public boolean isEnabled() {
+        return megaProperties.getCache().isEnabled() || isReplay();
+    }
+
+    public boolean isReplay() {
+        return megaProperties.getCache().isReplay();
+    }
+
+    /**
+     * Returns the cached body, or null when there is none or it has expired.
+     */
+    public byte[] get(SearchRequest request) {
+        Path path = path(request);
+        try {
+            long ttlMs = megaProperties.getCache().getTtlMs();
+            if (!isReplay() && ttlMs > 0
+                    && System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis() > ttlMs) {
+                misses.increment();
+                return null;
+            }
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+                byte[] body = in.readAllBytes();
+                hits.increment();
+                return body;
+            }
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            if (isReplay()) {
+                throw new IllegalStateException("Replay: no cached response for " + request.getMask() + " page "
+                        + request.getPage() + " limit " + request.getLimit() + " in " + directory());
+            }
+            return null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cache entry {}: {}", path, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    public void put(SearchRequest request, byte[] body) {
+        Path path = path(request);
+        Path tmp = path.resolveSibling(path.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                out.write(body);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cache entry " + path, e);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private Path path(SearchRequest request) {
+        String key = key(megaProperties.getSearchRoute(), MAPPER.writeValueAsBytes(request));
+        return directory().resolve(key.substring(0, 2)).resolve(key + ".json.gz");
+    }
+
+    private Path directory() {
+        return Path.of(megaProperties.getOutput().getDirectory()).resolve(megaProperties.getCache().getDirectory());
+    }
+
+    private static String key(String route, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(route.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
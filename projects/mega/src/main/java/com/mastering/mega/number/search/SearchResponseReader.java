@@ -0,0 +1,83 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.number.model.response.SearchResponse;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a search response body token by token. The consumer receives one reused {@link SearchResponse}
+ * instance per record, so it must copy whatever it keeps after {@code accept} returns.
+ */
+@UtilityClass
+public class SearchResponseReader {
+
+    private static final JsonMapper MAPPER = JsonMapper.shared();
+
+    public static long read(InputStream body, Consumer<SearchResponse> consumer) {
+        SearchResponse record = new SearchResponse();
+        long count = 0;
+
+        try (JsonParser parser = MAPPER.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return 0;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Expected an array of numbers, got " + token);
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readRecord(parser, record);
+                consumer.accept(record);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Decodes the whole body into records of their own.
+     */
+    public static List<SearchResponse> readAll(InputStream body) {
+        List<SearchResponse> records = new ArrayList<>();
+        read(body, record -> records.add(record.toBuilder().build()));
+        return records;
+    }
+
+    private static void readRecord(JsonParser parser, SearchResponse record) {
+        record.setMSISDN(null);
+        record.setNCLS_ID(null);
+        record.setNSTS_ID(null);
+        record.setCATEGORY_PRICE(null);
+        record.setCATEGORY_NAME(null);
+
+        String name;
+        while ((name = parser.nextName()) != null) {
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String text = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            switch (name) {
+                case "MSISDN" -> record.setMSISDN(text);
+                case "NCLS_ID" -> record.setNCLS_ID(text);
+                case "NSTS_ID" -> record.setNSTS_ID(text);
+                case "CATEGORY_PRICE" -> record.setCATEGORY_PRICE(text);
+                case "CATEGORY_NAME" -> record.setCATEGORY_NAME(text);
+                default -> {
+                }
+            }
+        }
+    }
+}
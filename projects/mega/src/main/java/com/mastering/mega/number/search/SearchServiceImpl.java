@@ -3,24 +3,60 @@ package com.mastering.mega.number.search;
 import com.mastering.mega.config.CategoryProperties;
 import com.mastering.mega.config.MegaProperties;
 import com.mastering.mega.config.PrefixProperties;
+import com.mastering.mega.number.MegaSession;
 import com.mastering.mega.number.MegaSessionManager;
+import com.mastering.mega.number.client.AdaptiveRateLimiter;
+import com.mastering.mega.number.client.PageSizeController;
+import com.mastering.mega.number.client.ResilientCaller;
+import com.mastering.mega.number.inventory.BinaryOutputService;
+import com.mastering.mega.number.inventory.CategoryAggregator;
+import com.mastering.mega.number.inventory.InventorySnapshot;
+import com.mastering.mega.number.inventory.NumberInventory;
+import com.mastering.mega.number.inventory.SnapshotService;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.metrics.ResponseBytesInterceptor;
 import com.mastering.mega.number.model.SearchRequestModel;
 import com.mastering.mega.number.model.request.SearchRequest;
 import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.number.sink.SinkDispatcher;
 
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import jakarta.annotation.PostConstruct;
-
-import java.util.Iterator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 @Service
 @RequiredArgsConstructor
@@ -30,34 +66,214 @@ public class SearchServiceImpl implements SearchService {
     };
 
     private final CsvService csvService;
+    private final CrawlJournal crawlJournal;
+    private final ShardPlanner shardPlanner;
+    private final SnapshotService snapshotService;
+    private final BinaryOutputService binaryOutputService;
+    private final CategoryAggregator categoryAggregator;
+    private final NumberInventory numberInventory;
+    private final SinkDispatcher sinkDispatcher;
     private final MegaSessionManager sessionManager;
+    private final CrawlLimiter crawlLimiter;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final PageSizeController pageSizeController;
+    private final ResilientCaller searchCaller;
+    private final ResponseCache responseCache;
+    private final CrawlMetrics crawlMetrics;
 
     private final MegaProperties megaProperties;
     private final CategoryProperties categoryProperties;
     private final PrefixProperties prefixProperties;
 
-    @PostConstruct
-    public void init() {
+    private final MsisdnDeduplicator deduplicator = new MsisdnDeduplicator();
+    private final Map<String, ReentrantLock> pageLocks = new ConcurrentHashMap<>();
+
+    void init() {
+        if (responseCache.isReplay()) {
+            log.info("Replaying search responses from cache, no session needed");
+            return;
+        }
         log.info("Init session mega24.kg...");
         sessionManager.refreshSession();
         log.info("cookie: {}", sessionManager.getCurrentCookie());
     }
 
     public void run() {
-        Iterator<String> prefixes = prefixProperties.getSet().iterator();
+        init();
+
+        boolean completed = true;
+        if (megaProperties.getConcurrency().isEnabled()) {
+            completed = runConcurrently();
+        } else {
+            for (String prefix : prefixProperties.getSet()) {
+                processPrefix(newModel(prefix));
+            }
+        }
+
+        if (completed) {
+            crawlJournal.complete();
+        }
+        categoryAggregator.writeReport();
+        if (megaProperties.getInventory().isEnabled()) {
+            log.info("Inventory: {} prefixes, {} MB", numberInventory.prefixes().size(), numberInventory.memoryBytes() >> 20);
+        }
+        if (responseCache.isEnabled()) {
+            log.info("Response cache: {} hits, {} misses", responseCache.hits(), responseCache.misses());
+        }
+    }
+
+    private boolean runConcurrently() {
+        Map<String, Future<?>> tasks = new LinkedHashMap<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String prefix : prefixProperties.getSet()) {
+                tasks.put(prefix, executor.submit(() -> crawlLimiter.runGlobal(() -> processPrefix(newModel(prefix)))));
+            }
+
+            List<String> failed = new ArrayList<>();
+            for (Map.Entry<String, Future<?>> task : tasks.entrySet()) {
+                try {
+                    task.getValue().get();
+                } catch (ExecutionException e) {
+                    failed.add(task.getKey());
+                    log.error("Prefix {} failed: {}", task.getKey(), e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                    return false;
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                log.warn("Crawl finished with failed prefixes: {}", failed);
+            }
+            return failed.isEmpty();
+        }
+    }
 
-        SearchRequestModel model = SearchRequestModel.builder()
+    private SearchRequestModel newModel(String prefix) {
+        return SearchRequestModel.builder()
                 .categories(categoryProperties.getAllCategories())
-                .limit(megaProperties.getLimit())
+                .limit(pageSizeController.limit())
                 .page(1)
+                .prefix(prefix)
                 .build();
-        while (prefixes.hasNext()) {
-            model.setPrefix(prefixes.next());
-            processPrefix(model);
+    }
+
+    /**
+     * Crawls the prefix again from the first page, replacing its output, and returns how it changed since its previous
+     * snapshot; null when diffs are disabled. The CSV output is swapped in once the crawl is complete, a failed one
+     * leaves the previous output in place.
+     */
+    public InventorySnapshot.Delta recrawl(String prefix) {
+        csvService.stage(prefix);
+        try {
+            InventorySnapshot.Delta delta = processPrefix(newModel(prefix));
+            csvService.publish(prefix);
+            return delta;
+        } finally {
+            csvService.close(prefix);
         }
     }
 
-    private void processPrefix(SearchRequestModel model) {
+    private InventorySnapshot.Delta processPrefix(SearchRequestModel model) {
+        if (!resume(model)) {
+            return null;
+        }
+        boolean resumed = crawlJournal.hasEntries(SearchRequestModel.CODE + model.getPrefix());
+        categoryAggregator.begin(model.getPrefix());
+        if (resumed) {
+            snapshotService.markIncomplete(model.getPrefix());
+            categoryAggregator.markIncomplete(model.getPrefix());
+        }
+        binaryOutputService.begin(model.getPrefix(), resumed);
+        deduplicator.clear(model.getPrefix());
+        if (megaProperties.getInventory().isEnabled()) {
+            numberInventory.clear(model.getPrefix());
+        }
+
+        try {
+            if (megaProperties.getSharding().isEnabled()) {
+                processPrefixSharded(model);
+            } else if (megaProperties.isStreaming()) {
+                processPrefixStreaming(model);
+            } else if (megaProperties.getPipeline().isEnabled()) {
+                processPrefixPipelined(model);
+            } else {
+                processPrefixSequential(model);
+            }
+            sinkDispatcher.flush(model.getPrefix());
+        } catch (RuntimeException e) {
+            sinkDispatcher.discard(model.getPrefix());
+            snapshotService.discard(model.getPrefix());
+            binaryOutputService.discard(model.getPrefix());
+            categoryAggregator.discard(model.getPrefix());
+            deduplicator.clear(model.getPrefix());
+            throw e;
+        }
+        long duplicates = deduplicator.dropped(model.getPrefix());
+        if (duplicates > 0) {
+            log.info("Dropped {} duplicate numbers in {}", duplicates, model.getPrefix());
+        }
+        deduplicator.clear(model.getPrefix());
+        binaryOutputService.complete(model.getPrefix());
+        categoryAggregator.complete(model.getPrefix());
+        InventorySnapshot.Delta delta = snapshotService.complete(model.getPrefix());
+        commitPage(model, model.getPage(), model.getLimit(), 0, 0);
+        return delta;
+    }
+
+    private boolean resume(SearchRequestModel model) {
+        CrawlJournal.Entry last = crawlJournal.last(model.getMask());
+        if (last == null) {
+            return true;
+        }
+        if (last.done()) {
+            log.info("Skipping {}, finished before restart", model.getMask());
+            return false;
+        }
+
+        // the journaled page may have been fetched with another limit than the one used from here on
+        int journaledLimit = last.limit() > 0 ? last.limit() : megaProperties.getLimit();
+        model.moveTo((long) last.page() * journaledLimit, model.getLimit());
+        log.info("Resuming {} from page {} (limit {}, skipping {})", model.getMask(), model.getPage(), model.getLimit(), model.getSkip());
+        return true;
+    }
+
+    private boolean firstSeen(String prefix, SearchResponse record) {
+        if (!megaProperties.getDedup().isEnabled() || deduplicator.firstSeen(prefix, record.getMSISDN())) {
+            return true;
+        }
+        crawlMetrics.onDuplicates(1);
+        return false;
+    }
+
+    private void write(String prefix, List<SearchResponse> page) {
+        sinkDispatcher.batch(prefix, page.stream().filter(record -> firstSeen(prefix, record)).toList());
+    }
+
+    // the current page can start with records a page of the previous size already delivered
+    private static List<SearchResponse> unseen(int skip, List<SearchResponse> page) {
+        return skip == 0 ? page : page.subList(Math.min(skip, page.size()), page.size());
+    }
+
+    private void advance(SearchRequestModel model) {
+        model.nextPage(pageSizeController.limit());
+    }
+
+    // records is the page as received, skip how many of them were already taken
+    private void commitPage(SearchRequestModel model, int page, int limit, int skip, long records) {
+        if (records > 0) {
+            crawlMetrics.onPage(model.getPrefix(), records - Math.min(skip, records));
+        }
+        if (crawlJournal.isEnabled()) {
+            // the journaled offsets must cover the page, so the sinks a resume reads from have to be through with it
+            sinkDispatcher.flushJournaled(model.getPrefix());
+            crawlJournal.append(new CrawlJournal.Entry(model.getMask(), page, limit, records, csvService.commit(model.getPrefix())));
+        }
+    }
+
+    private void processPrefixSequential(SearchRequestModel model) {
         ResponseEntity<List<SearchResponse>> responseEntity = send(model);
         List<SearchResponse> response = responseEntity.getBody();
 
@@ -65,46 +281,244 @@ public class SearchServiceImpl implements SearchService {
                 && response != null
                 && !response.isEmpty()) {
 
-            csvService.write(model.getPrefix(), response);
-            model.incrementPage();
+            write(model.getPrefix(), unseen(model.getSkip(), response));
+            commitPage(model, model.getPage(), model.getLimit(), model.getSkip(), response.size());
+            advance(model);
 
             responseEntity = send(model);
             response = responseEntity.getBody();
         }
     }
 
+    private void processPrefixPipelined(SearchRequestModel model) {
+        PagePipeline<Page> pipeline = new PagePipeline<>(megaProperties.getPipeline().getQueueDepth());
+
+        pipeline.run(model.getPrefix(), () -> {
+            ResponseEntity<List<SearchResponse>> responseEntity = send(model);
+            List<SearchResponse> response = responseEntity.getBody();
+            if (!responseEntity.getStatusCode().is2xxSuccessful() || response == null || response.isEmpty()) {
+                return null;
+            }
+            Page page = new Page(model.getPage(), model.getLimit(), model.getSkip(), response);
+            advance(model);
+            return page;
+        }, page -> {
+            write(model.getPrefix(), unseen(page.skip(), page.records()));
+            commitPage(model, page.number(), page.limit(), page.skip(), page.records().size());
+        });
+    }
+
+    private void processPrefixStreaming(SearchRequestModel model) {
+        try (SinkDispatcher.RecordWriter writer = sinkDispatcher.open(model.getPrefix())) {
+            long records;
+            Consumer<SearchResponse> consumer = record -> {
+                if (firstSeen(model.getPrefix(), record)) {
+                    writer.write(record);
+                }
+            };
+            while ((records = sendStreaming(model, consumer)) > 0) {
+                writer.flush();
+                commitPage(model, model.getPage(), model.getLimit(), model.getSkip(), records);
+                advance(model);
+            }
+        }
+    }
+
+    private void processPrefixSharded(SearchRequestModel root) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture.allOf(shardPlanner.plan(root).stream()
+                    .map(number -> crawlShard(shardModel(root, number), executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    private CompletableFuture<Void> crawlShard(SearchRequestModel shard, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> crawlShardPages(shard), executor)
+                .thenCompose(children -> CompletableFuture.allOf(children.stream()
+                        .map(number -> crawlShard(shardModel(shard, number), executor))
+                        .toArray(CompletableFuture[]::new)));
+    }
+
+    // returns the sub-masks to crawl instead when the shard does not fit in one page
+    private List<String> crawlShardPages(SearchRequestModel shard) {
+        if (!resume(shard)) {
+            return List.of();
+        }
+
+        List<SearchResponse> response = bodyOf(send(shard));
+        if (shardPlanner.shouldSplit(shard, response.size())) {
+            return shardPlanner.split(shard.getNumber());
+        }
+        shardPlanner.observeLeaf(shard);
+
+        while (!response.isEmpty()) {
+            List<SearchResponse> page = response;
+            withPageLock(shard.getPrefix(), () -> {
+                write(shard.getPrefix(), unseen(shard.getSkip(), page));
+                commitPage(shard, shard.getPage(), shard.getLimit(), shard.getSkip(), page.size());
+            });
+            boolean lastPage = response.size() < shard.getLimit();
+            advance(shard);
+            if (lastPage) {
+                break;
+            }
+            response = bodyOf(send(shard));
+        }
+        withPageLock(shard.getPrefix(), () -> commitPage(shard, shard.getPage(), shard.getLimit(), 0, 0));
+        return List.of();
+    }
+
+    // the shards of a prefix share its files, whose journaled length must not take in another shard's uncommitted
+    // page; a lock rather than a monitor, the shards are virtual threads that block in here
+    private void withPageLock(String prefix, Runnable action) {
+        ReentrantLock lock = pageLocks.computeIfAbsent(prefix, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SearchRequestModel shardModel(SearchRequestModel parent, String number) {
+        SearchRequestModel shard = newModel(parent.getPrefix());
+        shard.setNumber(number);
+        return shard;
+    }
+
+    private static List<SearchResponse> bodyOf(ResponseEntity<List<SearchResponse>> responseEntity) {
+        List<SearchResponse> body = responseEntity.getBody();
+        return responseEntity.getStatusCode().is2xxSuccessful() && body != null ? body : List.of();
+    }
+
     private ResponseEntity<List<SearchResponse>> send(SearchRequestModel model) {
-        final int MAX_ATTEMPTS = 3;
+        return execute(model, spec -> spec.retrieve().toEntity(TYPE), body -> ResponseEntity.ok(SearchResponseReader.readAll(body)),
+                responseEntity -> bodyOf(responseEntity).size(), megaProperties.getResilience().isHedge());
+    }
+
+    // never hedged, the consumer writes as it reads. A retried attempt skips the records earlier attempts delivered,
+    // and an attempt the caller gave up on may still be reading, so only the latest one reaches the consumer.
+    private long sendStreaming(SearchRequestModel model, Consumer<SearchResponse> consumer) {
+        AtomicInteger delivered = new AtomicInteger(model.getSkip());
+        AtomicInteger latest = new AtomicInteger();
+        Function<InputStream, Long> decode = body -> {
+            int attempt = latest.incrementAndGet();
+            AtomicInteger position = new AtomicInteger();
+            return SearchResponseReader.read(body, record -> {
+                synchronized (latest) {
+                    if (latest.get() != attempt) {
+                        throw new IllegalStateException("Superseded attempt at " + model.getMask() + " page " + model.getPage());
+                    }
+                    if (position.getAndIncrement() == delivered.get()) {
+                        consumer.accept(record);
+                        delivered.incrementAndGet();
+                    }
+                }
+            });
+        };
+        try {
+            return execute(model, spec -> spec.exchangeForRequiredValue((request, response) -> {
+                if (response.getStatusCode().isError()) {
+                    throw toStatusException(response);
+                }
+                return decode.apply(response.getBody());
+            }), decode, Long::intValue, false);
+        } finally {
+            synchronized (latest) {
+                latest.incrementAndGet(); // the consumer is the caller's again
+            }
+        }
+    }
+
+    private static HttpStatusCodeException toStatusException(ClientHttpResponse response) throws IOException {
+        HttpStatusCode status = response.getStatusCode();
+        byte[] body = response.getBody().readAllBytes();
+
+        if (status.is4xxClientError()) {
+            return HttpClientErrorException.create(status, response.getStatusText(), response.getHeaders(), body, StandardCharsets.UTF_8);
+        }
+        return HttpServerErrorException.create(status, response.getStatusText(), response.getHeaders(), body, StandardCharsets.UTF_8);
+    }
+
+    // decode reads a body from the response cache, call does the whole exchange when there is no cache
+    private <T> T execute(SearchRequestModel model, Function<RestClient.RequestBodySpec, T> call,
+                          Function<InputStream, T> decode, ToIntFunction<T> records, boolean hedge) {
         SearchRequest request = SearchRequest.of(model);
+        String description = model.getMask() + " page " + model.getPage();
+        if (responseCache.isEnabled()) {
+            return decode.apply(new ByteArrayInputStream(cached(request, description, hedge)));
+        }
+        return searchCaller.call(megaProperties.getSearchUri(), description, hedge,
+                rateLimiter::acquire, () -> attempt(request, call, records));
+    }
+
+    // hits skip the rate limiter; misses are fetched whole and do not feed the page size controller, whose limits
+    // would make the next run ask for pages that are not in the cache
+    private byte[] cached(SearchRequest request, String description, boolean hedge) {
+        String uri = megaProperties.getSearchUri();
+        byte[] body = responseCache.get(request);
+        if (body == null) {
+            byte[] fetched = searchCaller.call(uri, description, hedge, rateLimiter::acquire,
+                    () -> attempt(request, spec -> spec.retrieve().body(byte[].class), response -> 0));
+            body = fetched != null ? fetched : new byte[0];
+            responseCache.put(request, body);
+        }
+        return body;
+    }
 
-        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
-            try {
-                return sessionManager.getClient().post()
+    // one request on a leased session, timed from the moment it holds a host permit
+    private <T> T attempt(SearchRequest request, Function<RestClient.RequestBodySpec, T> call, ToIntFunction<T> records) {
+        long begun = System.nanoTime();
+        MegaSession session = sessionManager.borrow();
+        long generation = session.getGeneration();
+        AtomicLong bytes = new AtomicLong();
+        long[] start = new long[1];
+        try {
+            T response = crawlLimiter.callHost(megaProperties.getSearchUri(), () -> {
+                start[0] = System.nanoTime();
+                return call.apply(sessionManager.getClient().post()
                         .uri(megaProperties.getSearchUri())
+                        .attribute(MegaSession.ATTRIBUTE, session)
+                        .attribute(ResponseBytesInterceptor.COUNTER, bytes)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(request)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .retrieve()
-                        .toEntity(TYPE);
-
-            } catch (HttpClientErrorException.BadRequest ex) {
-                    if (attempt < MAX_ATTEMPTS) {
-                        sessionManager.invalidateAndRefresh();
-                        try {
-                            Thread.sleep(1000);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                        continue;
-                    }
-                throw ex;
+                        .accept(MediaType.APPLICATION_JSON));
+            });
+            long latency = observe(HttpStatus.OK.value(), start[0]);
+            pageSizeController.observe(records.applyAsInt(response), latency, bytes.get());
+            return response;
 
-            } catch (Exception ex) {
-                log.error(ex.getMessage(), ex);
-                throw ex;
+        } catch (HttpClientErrorException.BadRequest ex) {
+            observe(ex.getStatusCode().value(), start[0]);
+            sessionManager.refresh(session, generation);
+            throw ex;
+
+        } catch (HttpStatusCodeException ex) {
+            observe(ex.getStatusCode().value(), start[0]);
+            throw ex;
+
+        } catch (ResourceAccessException ex) {
+            // refused, reset or timed out; an attempt the caller cancelled before its deadline lost a hedge race
+            // and says nothing about the host
+            if (start[0] != 0 && (!Thread.currentThread().isInterrupted() || System.nanoTime() - begun
+                    >= TimeUnit.MILLISECONDS.toNanos(megaProperties.getResilience().getAttemptTimeoutMs()))) {
+                rateLimiter.onFailure(System.nanoTime() - start[0]);
             }
+            throw ex;
+
+        } finally {
+            sessionManager.release(session);
         }
+    }
+
+    // start is 0 when the call never got its host permit
+    private long observe(int status, long start) {
+        long latency = start != 0 ? System.nanoTime() - start : 0;
+        rateLimiter.onResponse(status, latency);
+        crawlMetrics.onResponse(status, latency);
+        return latency;
+    }
 
-        throw new RuntimeException();
+    private record Page(int number, int limit, int skip, List<SearchResponse> records) {
     }
 }
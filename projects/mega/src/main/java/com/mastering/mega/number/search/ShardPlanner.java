@@ -0,0 +1,76 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.SearchRequestModel;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits the {@code XXXXXX} suffix space of a prefix into sub-masks by fixing leading digits. A shard whose first
+ * page comes back full is split ten ways until it fits in one page or {@code maxDepth} is reached; the shallowest
+ * depth that fitted is remembered per prefix so the next crawl starts there instead of probing from the top.
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardPlanner {
+
+    private static final char WILDCARD = 'X';
+
+    private final MegaProperties megaProperties;
+
+    private final Map<String, Integer> learnedDepth = new ConcurrentHashMap<>();
+
+    public List<String> plan(SearchRequestModel root) {
+        Integer depth = learnedDepth.remove(root.getPrefix());
+        List<String> shards = List.of(root.getNumber());
+        for (int level = 0; depth != null && level < Math.min(depth, maxDepth(root)); level++) {
+            List<String> next = new ArrayList<>(shards.size() * 10);
+            shards.forEach(shard -> next.addAll(split(shard)));
+            shards = next;
+        }
+        return shards;
+    }
+
+    public boolean shouldSplit(SearchRequestModel shard, int observed) {
+        return shard.getPage() == 1 && observed >= shard.getLimit() && depth(shard.getNumber()) < maxDepth(shard);
+    }
+
+    public void observeLeaf(SearchRequestModel shard) {
+        learnedDepth.merge(shard.getPrefix(), depth(shard.getNumber()), Math::min);
+    }
+
+    public List<String> split(String number) {
+        int position = number.indexOf(WILDCARD);
+        if (position < 0) {
+            return List.of(number);
+        }
+
+        List<String> children = new ArrayList<>(10);
+        for (char digit = '0'; digit <= '9'; digit++) {
+            children.add(number.substring(0, position) + digit + number.substring(position + 1));
+        }
+        return children;
+    }
+
+    public static int depth(String number) {
+        int position = number.indexOf(WILDCARD);
+        return position < 0 ? number.length() : position;
+    }
+
+    // deep enough that a shard holds at most `limit` numbers unless configured otherwise
+    private int maxDepth(SearchRequestModel shard) {
+        int configured = megaProperties.getSharding().getMaxDepth();
+        if (configured >= 0) {
+            return Math.min(configured, shard.getNumber().length());
+        }
+        int fits = (int) Math.floor(Math.log10(Math.max(1, shard.getLimit())));
+        return Math.clamp(shard.getNumber().length() - fits, 0, shard.getNumber().length());
+    }
+}
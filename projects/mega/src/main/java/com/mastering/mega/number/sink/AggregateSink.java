@@ -0,0 +1,37 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.number.inventory.CategoryAggregator;
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class AggregateSink implements RecordSink {
+
+    private final CategoryAggregator categoryAggregator;
+
+    @Override
+    public String name() {
+        return "aggregate";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return categoryAggregator.isEnabled();
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+        categoryAggregator.record(prefix, record);
+    }
+
+    @Override
+    public void batch(String prefix, List<SearchResponse> records) {
+        categoryAggregator.record(prefix, records);
+    }
+}
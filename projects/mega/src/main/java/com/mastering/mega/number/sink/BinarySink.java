@@ -0,0 +1,47 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.number.inventory.BinaryOutputService;
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class BinarySink implements RecordSink {
+
+    private final BinaryOutputService binaryOutputService;
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return binaryOutputService.isEnabled();
+    }
+
+    @Override
+    public boolean isJournaled() {
+        return true;
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+        binaryOutputService.record(prefix, record);
+    }
+
+    @Override
+    public void batch(String prefix, List<SearchResponse> records) {
+        binaryOutputService.record(prefix, records);
+    }
+
+    @Override
+    public void flush(String prefix) {
+        binaryOutputService.flush(prefix);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.response.SearchResponse;
+import com.mastering.mega.number.search.CsvService;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class CsvSink implements RecordSink {
+
+    private final CsvService csvService;
+    private final MegaProperties megaProperties;
+
+    @Override
+    public String name() {
+        return "csv";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return megaProperties.getOutput().isCsv();
+    }
+
+    @Override
+    public boolean isJournaled() {
+        return true;
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+        csvService.write(prefix, List.of(record));
+    }
+
+    @Override
+    public void batch(String prefix, List<SearchResponse> records) {
+        csvService.write(prefix, records);
+    }
+
+    @Override
+    public void flush(String prefix) {
+        csvService.flush(prefix);
+    }
+}
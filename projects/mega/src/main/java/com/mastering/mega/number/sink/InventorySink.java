@@ -0,0 +1,35 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.inventory.NumberInventory;
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the crawl in memory, in {@link NumberInventory}.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventorySink implements RecordSink {
+
+    private final NumberInventory numberInventory;
+    private final MegaProperties megaProperties;
+
+    @Override
+    public String name() {
+        return "inventory";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return megaProperties.getInventory().isEnabled();
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+        numberInventory.put(prefix, record);
+    }
+}
@@ -0,0 +1,24 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import java.util.List;
+
+/**
+ * Drops everything; {@link SinkDispatcher} falls back to it when no output is enabled, e.g. to time the fetch side.
+ */
+public class NullSink implements RecordSink {
+
+    @Override
+    public String name() {
+        return "null";
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+    }
+
+    @Override
+    public void batch(String prefix, List<SearchResponse> records) {
+    }
+}
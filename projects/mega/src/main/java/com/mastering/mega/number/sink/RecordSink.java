@@ -0,0 +1,42 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import java.util.List;
+
+/**
+ * Destination of crawled records. {@link SinkDispatcher} calls a sink from one thread at a time, in the order records
+ * were crawled; a record handed to a sink is its own, it may be kept.
+ */
+public interface RecordSink extends AutoCloseable {
+
+    String name();
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    void record(String prefix, SearchResponse record);
+
+    default void batch(String prefix, List<SearchResponse> records) {
+        records.forEach(record -> record(prefix, record));
+    }
+
+    /**
+     * Whether a resumed crawl continues from this sink's output, so the crawl journal may only record a page once the
+     * sink has flushed it.
+     */
+    default boolean isJournaled() {
+        return false;
+    }
+
+    /**
+     * Makes everything recorded for the prefix visible to whoever reads the sink's output next.
+     */
+    default void flush(String prefix) {
+    }
+
+    @Override
+    default void close() {
+    }
+}
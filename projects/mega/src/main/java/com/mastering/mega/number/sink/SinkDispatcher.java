@@ -0,0 +1,280 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans crawled records out to every enabled {@link RecordSink}. With {@code mega.sink.async} each sink drains a queue
+ * of batches on its own thread, so a slow sink holds up the fetcher only once {@code queue-depth} batches are waiting
+ * for it. {@link #flush} is a barrier: it returns once every sink has taken and flushed what was handed over for the
+ * prefix before it, and rethrows the first failure a sink hit on that prefix. {@link #flushJournaled} does the same for
+ * the sinks the crawl journal depends on only, so a journaled page does not wait for the others.
+ */
+@Service
+@Slf4j
+public class SinkDispatcher {
+
+    private static final Task STOP = new Task(null, null, null, false);
+
+    private final List<RecordSink> available;
+    private final MegaProperties megaProperties;
+
+    private List<RecordSink> sinks = List.of();
+    private List<Lane> lanes;
+    private List<Lane> journaled;
+
+    public SinkDispatcher(List<RecordSink> available, MegaProperties megaProperties) {
+        this.available = available;
+        this.megaProperties = megaProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        sinks = available.stream().filter(RecordSink::isEnabled).toList();
+        if (sinks.isEmpty()) {
+            sinks = List.of(new NullSink());
+        }
+        MegaProperties.Sink config = megaProperties.getSink();
+        if (config.isAsync()) {
+            lanes = sinks.stream().map(sink -> new Lane(sink, Math.max(1, config.getQueueDepth()))).toList();
+            journaled = lanes.stream().filter(lane -> lane.sink.isJournaled()).toList();
+        }
+        log.info("Sinks: {}{}", sinks.stream().map(RecordSink::name).toList(), lanes == null ? " (on the fetch thread)" : "");
+    }
+
+    /**
+     * Hands the records over; the list must not change afterwards.
+     */
+    public void batch(String prefix, List<SearchResponse> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (lanes == null) {
+            sinks.forEach(sink -> sink.batch(prefix, records));
+            return;
+        }
+        Task task = new Task(prefix, records, null, false);
+        lanes.forEach(lane -> lane.put(task));
+    }
+
+    /**
+     * Collects single records, copied since a streaming decoder reuses its instance, into batches of
+     * {@code mega.sink.batch-size}.
+     */
+    public RecordWriter open(String prefix) {
+        return new RecordWriter(prefix, Math.max(1, megaProperties.getSink().getBatchSize()));
+    }
+
+    public void flush(String prefix) {
+        if (lanes == null) {
+            sinks.forEach(sink -> sink.flush(prefix));
+            return;
+        }
+        flush(prefix, lanes);
+    }
+
+    /**
+     * Flushes the sinks for which {@link RecordSink#isJournaled()} holds.
+     */
+    public void flushJournaled(String prefix) {
+        if (lanes == null) {
+            sinks.stream().filter(RecordSink::isJournaled).forEach(sink -> sink.flush(prefix));
+            return;
+        }
+        flush(prefix, journaled);
+    }
+
+    private void flush(String prefix, List<Lane> lanes) {
+        if (lanes.isEmpty()) {
+            return;
+        }
+        barrier(prefix, true, lanes);
+        IllegalStateException failure = null;
+        for (Lane lane : lanes) {
+            RuntimeException e = lane.failures.remove(prefix);
+            if (e == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = new IllegalStateException("Sink " + lane.sink.name() + " failed on " + prefix, e);
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits for what was handed over for the prefix and forgets its failures, for a crawl that is given up.
+     */
+    public void discard(String prefix) {
+        if (lanes == null) {
+            return;
+        }
+        barrier(prefix, false, lanes);
+        lanes.forEach(lane -> lane.failures.remove(prefix));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (lanes != null) {
+            lanes.forEach(Lane::stop);
+        }
+        sinks.forEach(RecordSink::close);
+    }
+
+    private void barrier(String prefix, boolean flush, List<Lane> lanes) {
+        List<CompletableFuture<Void>> done = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes) {
+            Task task = new Task(prefix, null, new CompletableFuture<>(), flush);
+            lane.put(task);
+            done.add(task.done());
+        }
+        try {
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the sinks of " + prefix, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public class RecordWriter implements AutoCloseable {
+        private final String prefix;
+        private final int batchSize;
+        private List<SearchResponse> pending;
+
+        private RecordWriter(String prefix, int batchSize) {
+            this.prefix = prefix;
+            this.batchSize = batchSize;
+            this.pending = new ArrayList<>(batchSize);
+        }
+
+        public void write(SearchResponse record) {
+            pending.add(record.toBuilder().build());
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Hands over the records collected so far.
+         */
+        public void flush() {
+            if (!pending.isEmpty()) {
+                batch(prefix, pending);
+                pending = new ArrayList<>(batchSize);
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    // records is null for a barrier, which completes done once everything queued before it is through
+    private record Task(String prefix, List<SearchResponse> records, CompletableFuture<Void> done, boolean flush) {
+    }
+
+    private static class Lane implements Runnable {
+        private final RecordSink sink;
+        private final BlockingQueue<Task> queue;
+        private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+        private final Thread thread;
+
+        private final LongAdder records = new LongAdder();
+        private final LongAdder waitedNanos = new LongAdder(); // fetchers blocked on a full queue
+
+        Lane(RecordSink sink, int queueDepth) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(queueDepth);
+            this.thread = Thread.ofPlatform().name("sink-" + sink.name()).daemon().start(this);
+        }
+
+        void put(Task task) {
+            try {
+                if (!queue.offer(task)) {
+                    long start = System.nanoTime();
+                    queue.put(task);
+                    waitedNanos.add(System.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while handing records to sink " + sink.name(), e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                if (task.records() == null) {
+                    if (task.flush()) {
+                        apply(task.prefix(), () -> sink.flush(task.prefix()));
+                    }
+                    task.done().complete(null);
+                } else {
+                    apply(task.prefix(), () -> {
+                        sink.batch(task.prefix(), task.records());
+                        records.add(task.records().size());
+                    });
+                }
+            }
+        }
+
+        // after a failure the prefix is skipped until the crawl flushes or discards it
+        private void apply(String prefix, Runnable action) {
+            if (failures.containsKey(prefix)) {
+                return;
+            }
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("Sink {} failed on {}: {}", sink.name(), prefix, e.getMessage(), e);
+                failures.put(prefix, e);
+            }
+        }
+
+        void stop() {
+            put(STOP);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            log.info("Sink {}: {} records, fetchers waited {} ms", sink.name(), records.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(waitedNanos.sum()));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mastering.mega.number.sink;
+
+import com.mastering.mega.number.inventory.SnapshotService;
+import com.mastering.mega.number.model.response.SearchResponse;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class SnapshotSink implements RecordSink {
+
+    private final SnapshotService snapshotService;
+
+    @Override
+    public String name() {
+        return "snapshot";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return snapshotService.isEnabled();
+    }
+
+    @Override
+    public void record(String prefix, SearchResponse record) {
+        snapshotService.record(prefix, record);
+    }
+
+    @Override
+    public void batch(String prefix, List<SearchResponse> records) {
+        snapshotService.record(prefix, records);
+    }
+}
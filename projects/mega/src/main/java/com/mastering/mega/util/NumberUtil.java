@@ -21,6 +21,28 @@ public class NumberUtil {
         SPACE_GROUPING_FORMAT.setParseIntegerOnly(true);
     }
 
+    public static final int SUFFIX_DIGITS = 6;
+    public static final int SUFFIX_SPACE = 1_000_000;
+
+    /**
+     * Last six digits of an MSISDN like {@code 996555123456} as an int, or -1 when it is not a full number.
+     */
+    public static int msisdnSuffix(CharSequence msisdn) {
+        if (msisdn == null || msisdn.length() < SUFFIX_DIGITS) {
+            return -1;
+        }
+
+        int suffix = 0;
+        for (int i = msisdn.length() - SUFFIX_DIGITS; i < msisdn.length(); i++) {
+            char ch = msisdn.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            suffix = suffix * 10 + (ch - '0');
+        }
+        return suffix;
+    }
+
     public static boolean isValidIntegerWithSpaces(String str) {
         if (str == null || str.isBlank()) {
             return false;
@@ -0,0 +1,149 @@
+package com.mastering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decoding one 20000-record search page: the regex implementation Mega24Parser used before against
+ * {@link Mega24RecordDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Mega24DecoderBenchmark {
+
+    private static final int RECORDS = 20000;
+    private static final int[] CATEGORIES = {1, 2, 66, 3, 67, 46, 47, 48, 49};
+
+    private String page;
+    private Mega24RecordDecoder decoder;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(Mega24DecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder json = new StringBuilder(RECORDS * 160).append('[');
+        for (int i = 0; i < RECORDS; i++) {
+            int category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"MSISDN\":\"996555").append(String.format("%06d", random.nextInt(1_000_000)))
+                    .append("\",\"NCLS_ID\":\"").append(category)
+                    .append("\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"").append(category * 100)
+                    .append("\",\"CATEGORY_NAME\":\"\\u0417\\u043e\\u043b\\u043e\\u0442\\u043e ").append(category)
+                    .append("\"}");
+        }
+        page = json.append(']').toString();
+        decoder = new Mega24RecordDecoder();
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        blackhole.consume(parseAndGroupJson(page));
+    }
+
+    @Benchmark
+    public void onePass(Blackhole blackhole) {
+        blackhole.consume(decoder.decode("555", page));
+        for (Mega24RecordDecoder.Group group : decoder.groups()) {
+            blackhole.consume(group.rows);
+        }
+    }
+
+    // Mega24Parser before the one-pass decoder, kept verbatim as the baseline.
+
+    private static Map<String, List<String>> parseAndGroupJson(String json) {
+        Map<String, List<String>> groups = new HashMap<>();
+
+        Pattern objectPattern = Pattern.compile("\\{([^}]*)\\}");
+        Matcher objectMatcher = objectPattern.matcher(json);
+
+        while (objectMatcher.find()) {
+            String objectContent = objectMatcher.group(1);
+
+            String msisdn = extractValue(objectContent, "MSISDN");
+            String catName = extractValue(objectContent, "CATEGORY_NAME");
+            String catPrice = extractValue(objectContent, "CATEGORY_PRICE");
+            String nclsId = extractValue(objectContent, "NCLS_ID");
+            String nstsId = extractValue(objectContent, "NSTS_ID");
+
+            if (nclsId == null) nclsId = "unknown";
+
+            if (catName != null && catName.contains(",")) {
+                catName = "\"" + catName + "\"";
+            }
+
+            String csvRow = String.join(",",
+                    msisdn,
+                    catName,
+                    catPrice,
+                    nclsId,
+                    nstsId
+            );
+
+            groups.computeIfAbsent(nclsId, k -> new ArrayList<>()).add(csvRow);
+        }
+
+        return groups;
+    }
+
+    private static String extractValue(String source, String key) {
+        Pattern p = Pattern.compile("\"" + key + "\":\\s*\"?([^,\"]*)\"?");
+        Matcher m = p.matcher(source);
+        if (m.find()) {
+            return decodeUnicode(m.group(1));
+        }
+        return "";
+    }
+
+    private static String decodeUnicode(String val) {
+        if (val == null) return null;
+        if (!val.contains("\\u")) return val;
+
+        StringBuilder sb = new StringBuilder();
+        int len = val.length();
+        for (int i = 0; i < len; i++) {
+            char ch = val.charAt(i);
+            if (ch == '\\' && i + 5 < len && val.charAt(i + 1) == 'u') {
+                String hex = val.substring(i + 2, i + 6);
+                try {
+                    sb.append((char) Integer.parseInt(hex, 16));
+                    i += 5;
+                } catch (NumberFormatException e) {
+                    sb.append(ch);
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mastering;
+
+import com.mastering.mega.number.search.MsisdnDeduplicator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Mega24RecordDecoderTest {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    @DisplayName("Groups rows by NCLS_ID in first-seen order")
+    public void groupsByCategory() {
+        String page = "[{\"MSISDN\":\"996555000001\",\"NCLS_ID\":\"2\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"500\","
+                + "\"CATEGORY_NAME\":\"Bronze\"},"
+                + " {\"MSISDN\":\"996555000002\",\"NCLS_ID\":\"1\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"300\","
+                + "\"CATEGORY_NAME\":\"Simple\"},"
+                + " {\"MSISDN\":\"996555000003\",\"NCLS_ID\":\"2\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"500\","
+                + "\"CATEGORY_NAME\":\"Bronze\"}]";
+        Mega24RecordDecoder decoder = new Mega24RecordDecoder();
+
+        int records = decoder.decode("555", page);
+        List<Mega24RecordDecoder.Group> groups = decoder.groups();
+
+        assertAll("Two groups",
+                () -> assertEquals(3, records),
+                () -> assertEquals(2, groups.size()),
+                () -> assertEquals("2", groups.getFirst().id),
+                () -> assertEquals(2, groups.getFirst().count),
+                () -> assertEquals("996555000001,Bronze,500,2,1" + NL + "996555000003,Bronze,500,2,1" + NL,
+                        groups.getFirst().rows.toString()),
+                () -> assertEquals("996555000002,Simple,300,1,1" + NL, groups.get(1).rows.toString())
+        );
+    }
+
+    @Test
+    @DisplayName("Decodes escapes, quotes CSV values and ignores unknown fields")
+    public void decodesEscapes() {
+        String page = "[{\"MSISDN\":\"996555000001\",\"EXTRA\":{\"a\":[1,\"}\"]},\"NCLS_ID\":null,\"NSTS_ID\":1,"
+                + "\"CATEGORY_PRICE\":\"1,000\",\"CATEGORY_NAME\":\"\\u0417\\u043e\\u043b\\u043e\\u0442\\u043e \\\"A\\\"\"}]";
+        Mega24RecordDecoder decoder = new Mega24RecordDecoder();
+
+        decoder.decode("555", page);
+        Mega24RecordDecoder.Group group = decoder.groups().getFirst();
+
+        assertEquals(Mega24RecordDecoder.UNKNOWN_GROUP, group.id);
+        assertEquals("996555000001,\"Золото \"\"A\"\"\",\"1,000\",unknown,1" + NL, group.rows.toString());
+    }
+
+    @Test
+    @DisplayName("Counts skipped and duplicate records without keeping them")
+    public void skipsAndDeduplicates() {
+        String page = "[" + record("000001") + "," + record("000002") + "," + record("000003") + "]";
+        MsisdnDeduplicator deduplicator = new MsisdnDeduplicator();
+        deduplicator.firstSeen("555", "996555000003");
+        Mega24RecordDecoder decoder = new Mega24RecordDecoder(deduplicator);
+
+        int records = decoder.decode("555", page, 1);
+
+        assertAll("Keeps the second record only",
+                () -> assertEquals(3, records),
+                () -> assertEquals(1, decoder.duplicates()),
+                () -> assertEquals(1, decoder.groups().getFirst().count),
+                () -> assertThat(decoder.groups().getFirst().rows.toString()).startsWith("996555000002,")
+        );
+    }
+
+    @Test
+    @DisplayName("Starts every page with empty groups")
+    public void resetsBetweenPages() {
+        Mega24RecordDecoder decoder = new Mega24RecordDecoder();
+        decoder.decode("555", "[" + record("000001") + "]");
+
+        int records = decoder.decode("555", "[]");
+
+        assertEquals(0, records);
+        assertThat(decoder.groups()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Rejects an object without quoted field names")
+    public void rejectsMalformedPage() {
+        Mega24RecordDecoder decoder = new Mega24RecordDecoder();
+
+        assertThatThrownBy(() -> decoder.decode("555", "[{MSISDN:1}]"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected a field name");
+    }
+
+    private static String record(String suffix) {
+        return "{\"MSISDN\":\"996555" + suffix + "\",\"NCLS_ID\":\"1\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"300\","
+                + "\"CATEGORY_NAME\":\"Simple\"}";
+    }
+}
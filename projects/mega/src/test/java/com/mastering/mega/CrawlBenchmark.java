@@ -0,0 +1,99 @@
+package com.mastering.mega;
+
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.search.SearchServiceImpl;
+import com.mastering.mega.stub.MegaStubServer;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end crawl throughput against {@link MegaStubServer}. Boots the application with the crawl runner switched
+ * off, times {@link SearchServiceImpl#run()} and prints pages/s, records/s and p50/p99 search latency as seen by the
+ * client ({@link CrawlMetrics}) and by the stub.
+ * <p>
+ * {@code --stub.*} arguments configure the server ({@code latency-ms, jitter-ms, error-rate, density,
+ * session-max-requests, page-shift, seed}); everything else is handed to Spring, e.g. {@code --prefix.set=550,551
+ * --mega.concurrency.enabled=true}.
+ */
+public class CrawlBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        MegaStubServer.Settings.SettingsBuilder settings = MegaStubServer.Settings.builder();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--stub.")) {
+                springArgs.add(arg);
+                continue;
+            }
+            String[] pair = arg.substring("--stub.".length()).split("=", 2);
+            switch (pair[0]) {
+                case "latency-ms" -> settings.latencyMs(Long.parseLong(pair[1]));
+                case "jitter-ms" -> settings.jitterMs(Long.parseLong(pair[1]));
+                case "error-rate" -> settings.errorRate(Double.parseDouble(pair[1]));
+                case "density" -> settings.density(Double.parseDouble(pair[1]));
+                case "session-max-requests" -> settings.sessionMaxRequests(Integer.parseInt(pair[1]));
+                case "page-shift" -> settings.pageShift(Integer.parseInt(pair[1]));
+                case "seed" -> settings.seed(Long.parseLong(pair[1]));
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        Path output = Files.createTempDirectory("mega-bench");
+        try (MegaStubServer stub = new MegaStubServer(settings.build()).start()) {
+            List<String> defaults = new ArrayList<>(List.of(
+                    "--mega.mode=benchmark",
+                    "--mega.host=" + stub.host(),
+                    "--mega.output.directory=" + output,
+                    "--mega.journal.enabled=false",
+                    "--mega.rate-limit.initial-rate=10000",
+                    "--mega.rate-limit.max-rate=10000",
+                    "--mega.rate-limit.burst=100"));
+            // an option given on the command line replaces the default rather than joining it
+            defaults.removeIf(option -> springArgs.stream().anyMatch(arg -> key(arg).equals(key(option))));
+            defaults.addAll(springArgs);
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Mega.class)
+                    .web(WebApplicationType.NONE)
+                    .run(defaults.toArray(String[]::new))) {
+                SearchServiceImpl searchService = context.getBean(SearchServiceImpl.class);
+                CrawlMetrics metrics = context.getBean(CrawlMetrics.class);
+
+                long start = System.nanoTime();
+                searchService.run();
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long[] latencies = stub.latenciesNanos();
+                System.out.printf(Locale.ROOT,
+                        "%.2fs  pages=%d (%.1f/s)  records=%d (%.0f/s)  client p50=%.1fms p99=%.1fms  stub p50=%.1fms p99=%.1fms"
+                                + "  retries=%d hedges=%d refreshes=%d duplicates=%d  MB=%.1f%n",
+                        seconds,
+                        metrics.getPages(), metrics.getPages() / seconds,
+                        metrics.getRecords(), metrics.getRecords() / seconds,
+                        metrics.getRequestLatencyP50Millis(), metrics.getRequestLatencyP99Millis(),
+                        percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                        metrics.getRetries(), metrics.getHedges(), metrics.getSessionRefreshes(), metrics.getDuplicates(),
+                        metrics.getBytesReceived() / 1e6);
+            }
+        }
+    }
+
+    private static String key(String option) {
+        int eq = option.indexOf('=');
+        return eq < 0 ? option : option.substring(0, eq);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
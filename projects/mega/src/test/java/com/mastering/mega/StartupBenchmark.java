@@ -0,0 +1,117 @@
+package com.mastering.mega;
+
+import com.mastering.mega.stub.MegaStubServer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the crawler to its first request at {@link MegaStubServer}, which covers JVM start, the Spring
+ * context and the session handshake. Each run starts a fresh JVM on the extracted jar and is killed once the stub has
+ * seen a request. Variants: {@code plain}, {@code aot} ({@code -Dspring.aot.enabled=true}), {@code cds} (the AppCDS
+ * archive) and {@code aot+cds}.
+ * <p>
+ * Build the inputs with {@code mvn -Pfast-startup package}, then run with
+ * {@code --jar=target/extracted/mega-1.0.0.jar [--archive=target/extracted/mega.jsa] [--runs=10]
+ * [--variants=plain,aot,cds,aot+cds]}. The AOT variants need the jar built by that profile.
+ */
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_MS = 60_000;
+    private static final List<String> OPTIONS = List.of("jar", "archive", "runs", "variants");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "jar", "target/extracted/mega-1.0.0.jar",
+                "runs", "10",
+                "variants", "plain,aot,cds,aot+cds"));
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            if (pair.length != 2 || !OPTIONS.contains(pair[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            options.put(pair[0], pair[1]);
+        }
+        // an AppCDS archive only maps for the classpath it was dumped with, which the build gives as an absolute path
+        Path jar = Path.of(options.get("jar")).toAbsolutePath();
+        Path archive = Path.of(options.getOrDefault("archive", jar.resolveSibling("mega.jsa").toString()));
+        int runs = Integer.parseInt(options.get("runs"));
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException(jar + " not found, build it with mvn -Pfast-startup package");
+        }
+
+        Path output = Files.createTempDirectory("mega-startup");
+        for (String variant : options.get("variants").split(",")) {
+            List<String> flags = flags(variant, archive);
+            run(variant, flags, jar, output); // warms the page cache, not counted
+
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = run(variant, flags, jar, output);
+            }
+            Arrays.sort(millis);
+            System.out.printf(Locale.ROOT, "%-8s  first request p50=%dms  min=%dms  max=%dms  (%d runs)%n",
+                    variant, millis[runs / 2], millis[0], millis[runs - 1], runs);
+        }
+    }
+
+    private static List<String> flags(String variant, Path archive) {
+        List<String> flags = new ArrayList<>();
+        for (String part : variant.split("\\+")) {
+            switch (part) {
+                case "plain" -> {
+                }
+                case "aot" -> flags.add("-Dspring.aot.enabled=true");
+                case "cds" -> {
+                    if (!Files.isRegularFile(archive)) {
+                        throw new IllegalArgumentException(archive + " not found, build it with mvn -Pfast-startup package");
+                    }
+                    flags.add("-XX:SharedArchiveFile=" + archive);
+                }
+                default -> throw new IllegalArgumentException("Unknown variant " + variant);
+            }
+        }
+        return flags;
+    }
+
+    // milliseconds from process start to the first request the stub receives
+    private static long run(String variant, List<String> flags, Path jar, Path output) throws Exception {
+        try (MegaStubServer stub = new MegaStubServer(MegaStubServer.Settings.builder().build()).start()) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(flags);
+            command.addAll(List.of("-jar", jar.toString(),
+                    "--mega.host=" + stub.host(),
+                    "--mega.output.directory=" + output,
+                    "--mega.journal.enabled=false",
+                    "--prefix.set=550"));
+            File log = output.resolve(variant + ".log").toFile();
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+            try {
+                while (stub.firstRequestNanos() == 0) {
+                    if (!process.isAlive()) {
+                        throw new IllegalStateException(variant + " exited with " + process.exitValue()
+                                + " before its first request, see " + log);
+                    }
+                    if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS)) {
+                        throw new IllegalStateException(variant + " sent no request within " + TIMEOUT_MS + " ms, see " + log);
+                    }
+                    Thread.sleep(1);
+                }
+                return TimeUnit.NANOSECONDS.toMillis(stub.firstRequestNanos() - start);
+            } finally {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
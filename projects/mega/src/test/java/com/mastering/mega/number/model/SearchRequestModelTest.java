@@ -0,0 +1,80 @@
+package com.mastering.mega.number.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchRequestModelTest {
+
+    @Test
+    @DisplayName("Next page keeps the offset when the limit stays")
+    public void nextPageSameLimit() {
+        SearchRequestModel request = SearchRequestModel.builder().limit(20).page(3).build();
+
+        request.nextPage(20);
+
+        assertAll("Moves one page on",
+                () -> assertEquals(4, request.getPage()),
+                () -> assertEquals(20, request.getLimit()),
+                () -> assertEquals(0, request.getSkip())
+        );
+    }
+
+    @Test
+    @DisplayName("Next page remaps page and skip when the limit grows")
+    public void nextPageLargerLimit() {
+        SearchRequestModel request = SearchRequestModel.builder().limit(20).page(3).build();
+
+        request.nextPage(25);
+
+        // record 60 is the eleventh of page 3 at 25 per page
+        assertAll("Points at record 60",
+                () -> assertEquals(3, request.getPage()),
+                () -> assertEquals(25, request.getLimit()),
+                () -> assertEquals(10, request.getSkip())
+        );
+    }
+
+    @Test
+    @DisplayName("Next page remaps page and skip when the limit shrinks")
+    public void nextPageSmallerLimit() {
+        SearchRequestModel request = SearchRequestModel.builder().limit(50).page(2).build();
+
+        request.nextPage(30);
+
+        assertAll("Points at record 100",
+                () -> assertEquals(4, request.getPage()),
+                () -> assertEquals(30, request.getLimit()),
+                () -> assertEquals(10, request.getSkip())
+        );
+    }
+
+    @Test
+    @DisplayName("Moving to an offset on a page boundary skips nothing")
+    public void moveToBoundary() {
+        SearchRequestModel request = SearchRequestModel.builder().build();
+
+        request.moveTo(0, 20);
+        assertAll("Starts at the first page",
+                () -> assertEquals(1, request.getPage()),
+                () -> assertEquals(0, request.getSkip())
+        );
+
+        request.moveTo(200, 40);
+        assertAll("Starts page 6",
+                () -> assertEquals(6, request.getPage()),
+                () -> assertEquals(40, request.getLimit()),
+                () -> assertEquals(0, request.getSkip())
+        );
+    }
+
+    @Test
+    @DisplayName("Mask joins the country code, prefix and number")
+    public void mask() {
+        SearchRequestModel request = SearchRequestModel.builder().prefix("555").number("12XXXX").build();
+
+        assertEquals("99655512XXXX", request.getMask());
+    }
+}
@@ -0,0 +1,67 @@
+package com.mastering.mega.number.query;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MaskMatcherTest {
+
+    @Test
+    @DisplayName("Matches fixed digits and lets wildcards through")
+    public void matchesSuffix() {
+        MaskMatcher matcher = MaskMatcher.compile("996___X1111X");
+
+        assertAll("Checks the fixed positions only",
+                () -> assertThat(matcher.matches(311110)).isTrue(),
+                () -> assertThat(matcher.matches(11119)).isTrue(),
+                () -> assertThat(matcher.matches(311210)).isFalse(),
+                () -> assertThat(matcher.matchesPrefix("555")).isTrue()
+        );
+    }
+
+    @Test
+    @DisplayName("Accepts full, prefixed and suffix-only masks")
+    public void compilesShortForms() {
+        MaskMatcher prefixed = MaskMatcher.compile("555xxx777");
+        MaskMatcher suffix = MaskMatcher.compile("_2_4_6");
+
+        assertAll("Same rules for every form",
+                () -> assertThat(prefixed.matchesPrefix("555")).isTrue(),
+                () -> assertThat(prefixed.matchesPrefix("556")).isFalse(),
+                () -> assertThat(prefixed.matchesPrefix("55")).isFalse(),
+                () -> assertThat(prefixed.matches(123777)).isTrue(),
+                () -> assertThat(suffix.matchesPrefix("700")).isTrue(),
+                () -> assertThat(suffix.matches(929496)).isTrue(),
+                () -> assertThat(suffix.matches(929497)).isFalse()
+        );
+    }
+
+    @Test
+    @DisplayName("Enumerates exactly the matching suffixes")
+    public void enumeratesCandidates() {
+        MaskMatcher matcher = MaskMatcher.compile("X1111X");
+
+        List<Integer> candidates = new ArrayList<>();
+        PrimitiveIterator.OfInt iterator = matcher.candidates();
+        iterator.forEachRemaining((int suffix) -> candidates.add(suffix));
+
+        assertEquals(100, matcher.candidateCount());
+        assertThat(candidates).hasSize(100).doesNotHaveDuplicates().contains(11110, 911119);
+        assertThat(candidates).allMatch(matcher::matches);
+    }
+
+    @Test
+    @DisplayName("Rejects masks of the wrong length or with other characters")
+    public void rejectsInvalidMask() {
+        assertThatThrownBy(() -> MaskMatcher.compile("12345")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MaskMatcher.compile("99655512A456")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,122 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CrawlJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private CrawlJournal journal;
+
+    @BeforeEach
+    public void setUp() {
+        MegaProperties megaProperties = new MegaProperties();
+        megaProperties.getOutput().setDirectory(directory.toString());
+        megaProperties.getJournal().setEnabled(true);
+        file = directory.resolve(megaProperties.getJournal().getFile());
+        journal = new CrawlJournal(megaProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    @DisplayName("Resumes from the last complete line when the tail is torn")
+    public void resumesFromTornLine() throws IOException {
+        String complete = "555XXXXXX\t1\t20\t20\t555.csv=120\n";
+        Files.writeString(file, complete + "555XXXXXX\t2\t20\t20\t555.csv=2");
+
+        journal.init();
+
+        CrawlJournal.Entry last = journal.last("555XXXXXX");
+        assertAll("Keeps the committed page only",
+                () -> assertEquals(1, last.page()),
+                () -> assertEquals(20, last.limit()),
+                () -> assertEquals(120L, journal.committedOffset(Path.of("555.csv"))),
+                () -> assertEquals(complete, Files.readString(file))
+        );
+    }
+
+    @Test
+    @DisplayName("Appends after the torn tail is cut off")
+    public void appendsAfterTornLine() throws IOException {
+        Files.writeString(file, "555XXXXXX\t1\t20\t20\t555.csv=120\n555XXX");
+
+        journal.init();
+        journal.append(new CrawlJournal.Entry("555XXXXXX", 2, 20, 20, Map.of("555.csv", 240L)));
+
+        assertThat(Files.readAllLines(file)).containsExactly(
+                "555XXXXXX\t1\t20\t20\t555.csv=120",
+                "555XXXXXX\t2\t20\t20\t555.csv=240");
+    }
+
+    @Test
+    @DisplayName("Skips a corrupt line and reads the ones around it")
+    public void skipsCorruptLine() throws IOException {
+        Files.write(file, List.of(
+                "550XXXXXX\t1\t20\t20\t550.csv=100",
+                "550XXXXXX\tone\t20\t20\t550.csv=200",
+                "551XXXXXX\t3\t0\t20"));
+
+        journal.init();
+
+        assertAll("Reads both slices",
+                () -> assertEquals(1, journal.last("550XXXXXX").page()),
+                () -> assertEquals(100L, journal.committedOffset(Path.of("550.csv"))),
+                () -> assertThat(journal.last("551XXXXXX").done()).isTrue(),
+                () -> assertThat(journal.hasEntries("55")).isTrue(),
+                () -> assertThat(journal.hasEntries("552")).isFalse()
+        );
+    }
+
+    @Test
+    @DisplayName("Reads a line written before the limit was journaled")
+    public void readsLegacyLine() throws IOException {
+        Files.writeString(file, "555XXXXXX\t4\t20\t555.csv=300\n");
+
+        journal.init();
+
+        CrawlJournal.Entry last = journal.last("555XXXXXX");
+        assertAll("Limit reads as 0",
+                () -> assertEquals(4, last.page()),
+                () -> assertEquals(0, last.limit()),
+                () -> assertEquals(20L, last.records()),
+                () -> assertEquals(Map.of("555.csv", 300L), last.offsets())
+        );
+    }
+
+    @Test
+    @DisplayName("Starts over once the crawl is complete")
+    public void startsOverAfterComplete() throws IOException {
+        journal.init();
+        journal.append(new CrawlJournal.Entry("555XXXXXX", 1, 20, 20, Map.of("555.csv", 120L)));
+
+        journal.complete();
+
+        assertAll("Forgets everything",
+                () -> assertThat(Files.exists(file)).isFalse(),
+                () -> assertNull(journal.last("555XXXXXX")),
+                () -> assertNull(journal.committedOffset(Path.of("555.csv")))
+        );
+    }
+}
@@ -0,0 +1,108 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.metrics.CrawlMetrics;
+import com.mastering.mega.number.model.response.SearchResponse;
+import tools.jackson.dataformat.csv.CsvMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvServiceImplTest {
+
+    private static final SearchResponse FIRST = record("996555000001");
+    private static final SearchResponse SECOND = record("996555000002");
+    private static final SearchResponse THIRD = record("996555000003");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Resuming truncates to the journaled offset and does not repeat the header")
+    public void resumesFromJournaledOffset() throws IOException {
+        Path resumed = directory.resolve("resumed");
+        Path expected = directory.resolve("expected");
+
+        MegaProperties megaProperties = properties(resumed);
+        CrawlJournal journal = new CrawlJournal(megaProperties);
+        journal.init();
+        CsvServiceImpl csvService = csvService(megaProperties, journal);
+        csvService.write("555", List.of(FIRST, SECOND));
+        Map<String, Long> offsets = csvService.commit("555");
+        journal.append(new CrawlJournal.Entry("555XXXXXX", 1, 2, 2, offsets));
+        // a page written after the last commit, cut short by the crash
+        csvService.write("555", List.of(THIRD));
+        csvService.flush("555");
+        csvService.close();
+        Files.writeString(resumed.resolve("555.csv"), "996555000004,", StandardOpenOption.APPEND);
+        journal.close();
+
+        CrawlJournal reopened = new CrawlJournal(megaProperties);
+        reopened.init();
+        CsvServiceImpl resumedService = csvService(megaProperties, reopened);
+        resumedService.write("555", List.of(THIRD));
+        resumedService.close();
+        reopened.close();
+
+        CsvServiceImpl fresh = csvService(properties(expected), new CrawlJournal(properties(expected)));
+        fresh.write("555", List.of(FIRST, SECOND, THIRD));
+        fresh.close();
+
+        assertEquals(Files.readString(expected.resolve("555.csv")), Files.readString(resumed.resolve("555.csv")));
+    }
+
+    @Test
+    @DisplayName("A new run rewrites the file from the header")
+    public void rewritesWithoutJournal() throws IOException {
+        MegaProperties megaProperties = properties(directory);
+        Files.writeString(directory.resolve("555.csv"), "left over from the last run\n");
+
+        CsvServiceImpl csvService = csvService(megaProperties, new CrawlJournal(megaProperties));
+        csvService.write("555", List.of(FIRST));
+        csvService.close();
+
+        List<String> lines = Files.readAllLines(directory.resolve("555.csv"));
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1)).contains("996555000001");
+    }
+
+    private static MegaProperties properties(Path directory) {
+        MegaProperties megaProperties = new MegaProperties();
+        megaProperties.getOutput().setDirectory(directory.toString());
+        megaProperties.getJournal().setEnabled(true);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return megaProperties;
+    }
+
+    private static CsvServiceImpl csvService(MegaProperties megaProperties, CrawlJournal journal) {
+        CsvMapper csvMapper = new CsvMapper();
+        CrawlMetrics crawlMetrics = new CrawlMetrics(megaProperties.getMetrics(), () -> 0);
+        return new CsvServiceImpl(csvMapper, csvMapper.schemaFor(SearchResponse.class).withHeader(),
+                megaProperties, journal, crawlMetrics);
+    }
+
+    private static SearchResponse record(String msisdn) {
+        return SearchResponse.builder()
+                .MSISDN(msisdn)
+                .NCLS_ID("1")
+                .NSTS_ID("1")
+                .CATEGORY_PRICE("500")
+                .CATEGORY_NAME("Bronze")
+                .build();
+    }
+}
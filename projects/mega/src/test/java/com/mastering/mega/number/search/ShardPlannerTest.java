@@ -0,0 +1,65 @@
+package com.mastering.mega.number.search;
+
+import com.mastering.mega.config.MegaProperties;
+import com.mastering.mega.number.model.SearchRequestModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardPlannerTest {
+
+    private final MegaProperties megaProperties = new MegaProperties();
+    private final ShardPlanner planner = new ShardPlanner(megaProperties);
+
+    @Test
+    @DisplayName("Splits on the first wildcard")
+    public void splitsFirstWildcard() {
+        List<String> children = planner.split("12XXXX");
+
+        assertThat(children).hasSize(10);
+        assertThat(children).startsWith("120XXX", "121XXX").endsWith("129XXX");
+    }
+
+    @Test
+    @DisplayName("A number without wildcards is its own only shard")
+    public void splitsFixedNumber() {
+        assertThat(planner.split("123456")).containsExactly("123456");
+    }
+
+    @Test
+    @DisplayName("Depth counts the fixed leading digits")
+    public void depth() {
+        assertEquals(0, ShardPlanner.depth("XXXXXX"));
+        assertEquals(2, ShardPlanner.depth("12XXXX"));
+        assertEquals(6, ShardPlanner.depth("123456"));
+    }
+
+    @Test
+    @DisplayName("Splits a full first page until a shard fits the limit")
+    public void shouldSplit() {
+        SearchRequestModel root = SearchRequestModel.builder().limit(1000).number("XXXXXX").build();
+        SearchRequestModel leaf = SearchRequestModel.builder().limit(1000).number("123XXX").build();
+        SearchRequestModel later = SearchRequestModel.builder().limit(1000).page(2).number("XXXXXX").build();
+
+        assertThat(planner.shouldSplit(root, 1000)).isTrue();
+        assertThat(planner.shouldSplit(root, 999)).isFalse();
+        // 1000 numbers fit one page of 1000
+        assertThat(planner.shouldSplit(leaf, 1000)).isFalse();
+        assertThat(planner.shouldSplit(later, 1000)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Starts the next crawl at the shallowest depth that fitted")
+    public void plansLearnedDepth() {
+        SearchRequestModel root = SearchRequestModel.builder().prefix("555").limit(1000).build();
+        planner.observeLeaf(SearchRequestModel.builder().prefix("555").number("12XXXX").build());
+        planner.observeLeaf(SearchRequestModel.builder().prefix("555").number("123XXX").build());
+
+        assertThat(planner.plan(root)).hasSize(100).contains("00XXXX", "99XXXX");
+        assertThat(planner.plan(root)).containsExactly("XXXXXX");
+    }
+}
@@ -0,0 +1,297 @@
+package com.mastering.mega.stub;
+
+import com.mastering.mega.number.query.MaskMatcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tools.jackson.databind.json.JsonMapper;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stand-in for mega24.kg {@code /ru/number/search}: GET hands out a PHPSESSID cookie, POST answers searches from a
+ * deterministic synthetic inventory and rejects unknown or worn-out sessions with 400, like the real site.
+ */
+public class MegaStubServer implements AutoCloseable {
+
+    public static final String ROUTE = "/ru/number/search";
+
+    private static final Map<Integer, Integer> PRICES = Map.of(
+            1, 0, 2, 300, 66, 500, 3, 3000, 67, 5000, 46, 45000, 47, 30000, 48, 15000, 49, 7500);
+
+    @Getter
+    @Builder
+    public static class Settings {
+        @Builder.Default
+        private long seed = 42;
+        @Builder.Default
+        private double density = 0.05; // share of the 10^6 suffixes available per prefix
+        @Builder.Default
+        private long latencyMs = 20;
+        @Builder.Default
+        private long jitterMs = 10;
+        @Builder.Default
+        private double errorRate = 0.0; // share of searches answered with 503
+        @Builder.Default
+        private int sessionMaxRequests = 0; // 400 once a session served this many searches, 0 never
+        @Builder.Default
+        private int pageShift = 0; // pages start up to this many records early, like a listing that moved meanwhile
+    }
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final JsonMapper mapper = JsonMapper.shared();
+
+    private final Map<String, int[]> inventories = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong firstRequest = new AtomicLong();
+    private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+    public MegaStubServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(ROUTE, this::handle);
+    }
+
+    public MegaStubServer start() {
+        server.start();
+        return this;
+    }
+
+    public String host() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long searches() {
+        return searches.get();
+    }
+
+    public long records() {
+        return records.get();
+    }
+
+    public long handshakes() {
+        return handshakes.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * {@link System#nanoTime()} when the first request of any kind arrived, 0 before that.
+     */
+    public long firstRequestNanos() {
+        return firstRequest.get();
+    }
+
+    public long[] latenciesNanos() {
+        return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * Numbers the stub holds for the prefix, useful to check that a crawl got all of them.
+     */
+    public int inventorySize(String prefix) {
+        return inventory(prefix).length;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        firstRequest.compareAndSet(0, start);
+        try (exchange) {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handshake(exchange);
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                search(exchange);
+                latencies.add(System.nanoTime() - start);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private void handshake(HttpExchange exchange) throws IOException {
+        String id = UUID.randomUUID().toString().replace("-", "");
+        sessions.put(id, new AtomicInteger());
+        handshakes.incrementAndGet();
+
+        exchange.getResponseHeaders().add("Set-Cookie", "PHPSESSID=" + id + "; path=/; HttpOnly");
+        exchange.getResponseHeaders().add("Set-Cookie", "_lang_1_x=ru; path=/");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        byte[] requestBody = exchange.getRequestBody().readAllBytes();
+        SplittableRandom random = new SplittableRandom(System.nanoTime());
+        sleep(settings.getLatencyMs() + (settings.getJitterMs() > 0 ? random.nextLong(settings.getJitterMs() + 1) : 0));
+
+        if (!validSession(exchange.getRequestHeaders().getFirst("Cookie"))) {
+            rejected.incrementAndGet();
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+        if (random.nextDouble() < settings.getErrorRate()) {
+            failed.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        Map<?, ?> request = mapper.readValue(requestBody, Map.class);
+        int limit = ((Number) request.get("limit")).intValue();
+        int page = ((Number) request.get("page")).intValue();
+        String mask = String.valueOf(request.get("mask"));
+        int[] categories = parseCategories(String.valueOf(request.get("categories")));
+
+        int shift = page > 1 && settings.getPageShift() > 0 ? random.nextInt(settings.getPageShift() + 1) : 0;
+        byte[] body = page(mask, categories, (page - 1) * limit - shift, limit).getBytes(StandardCharsets.UTF_8);
+        searches.incrementAndGet();
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write(body);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private boolean validSession(String cookie) {
+        if (cookie == null) {
+            return false;
+        }
+        for (String part : cookie.split(";")) {
+            String trimmed = part.trim();
+            if (trimmed.startsWith("PHPSESSID=")) {
+                String id = trimmed.substring("PHPSESSID=".length());
+                AtomicInteger used = sessions.get(id);
+                if (used == null) {
+                    return false;
+                }
+                if (settings.getSessionMaxRequests() > 0 && used.incrementAndGet() > settings.getSessionMaxRequests()) {
+                    sessions.remove(id);
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String page(String mask, int[] categories, int offset, int limit) {
+        MaskMatcher matcher = MaskMatcher.compile(mask);
+        String prefix = mask.substring(3, 6);
+        int skip = offset;
+
+        StringBuilder json = new StringBuilder(limit * 110 + 2).append('[');
+        int written = 0;
+        for (int suffix : matcher.matchesPrefix(prefix) ? inventory(prefix) : new int[0]) {
+            if (!matcher.matches(suffix)) {
+                continue;
+            }
+            int category = categories[categoryIndex(prefix, suffix, categories.length)];
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (written == limit) {
+                break;
+            }
+            if (written++ > 0) {
+                json.append(',');
+            }
+            json.append("{\"MSISDN\":\"996").append(prefix).append(String.format("%06d", suffix))
+                    .append("\",\"NCLS_ID\":\"").append(category)
+                    .append("\",\"NSTS_ID\":\"1\",\"CATEGORY_PRICE\":\"").append(PRICES.getOrDefault(category, 0))
+                    .append("\",\"CATEGORY_NAME\":\"\\u041a\\u0430\\u0442\\u0435\\u0433\\u043e\\u0440\\u0438\\u044f ")
+                    .append(category).append("\"}");
+        }
+        records.addAndGet(written);
+        return json.append(']').toString();
+    }
+
+    private int[] inventory(String prefix) {
+        return inventories.computeIfAbsent(prefix, key -> {
+            List<Integer> available = new ArrayList<>();
+            long threshold = (long) (settings.getDensity() * 1_000_000);
+            for (int suffix = 0; suffix < 1_000_000; suffix++) {
+                if (Math.floorMod(mix(Integer.parseInt(key), suffix), 1_000_000L) < threshold) {
+                    available.add(suffix);
+                }
+            }
+            return available.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    private int categoryIndex(String prefix, int suffix, int categories) {
+        return (int) Math.floorMod(mix(Integer.parseInt(prefix) + 7919, suffix), (long) categories);
+    }
+
+    private long mix(long prefix, long suffix) {
+        long z = settings.getSeed() ^ (prefix * 0x9E3779B97F4A7C15L) ^ (suffix * 0xBF58476D1CE4E5B9L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int[] parseCategories(String categories) {
+        int[] parsed = Arrays.stream(categories.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty() && !"null".equals(id))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        return parsed.length > 0 ? parsed : Set.copyOf(PRICES.keySet()).stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}